@@ -56,7 +56,6 @@ public class MainActivity extends AppCompatActivity {
         findViewById(R.id.take_photo)
             .setOnClickListener(v -> {
                 _camera.getPhoto()
-                    .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(
                         this::onCameraPhoto,
                         this::onCameraError
@@ -70,11 +69,20 @@ public class MainActivity extends AppCompatActivity {
         // call base implementation
         super.onResume();
 
-        // start camera
-        startCamera();
+        // refresh permissions (may have changed in settings)
+        _permissionService.refresh();
+
+        // resume camera (or start it the first time)
+        if (_camera.getState() == CameraView.State.SUSPENDED) {
+            _camera.resume();
+        }
+        else {
+            startCamera();
+        }
 
         // poll
         _cameraPreviewSubscription = Observable.interval(1, TimeUnit.SECONDS)
+            .observeOn(AndroidSchedulers.mainThread())
             .map(tick -> _camera.getPreviewBitmap())
             .subscribe(
                 this::onCameraSample,
@@ -88,8 +96,8 @@ public class MainActivity extends AppCompatActivity {
         // call base implementation
         super.onPause();
 
-        // pause camera
-        stopCamera();
+        // pause camera (keeps camera configuration)
+        _camera.suspend();
 
         // stop preview if done
         if (_cameraPreviewSubscription != null) {
@@ -166,6 +174,8 @@ public class MainActivity extends AppCompatActivity {
         // call base implementation
         super
             .onRequestPermissionsResult(requestCode, permissions, grantResults);
+        _permissionService
+            .onRequestPermissionsResult(requestCode, permissions, grantResults);
 
         // start camera if permission is granted
         if (_permissionService.getPermissionState(Manifest.permission.CAMERA)
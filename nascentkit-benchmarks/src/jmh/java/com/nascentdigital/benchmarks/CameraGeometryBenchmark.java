@@ -0,0 +1,60 @@
+package com.nascentdigital.benchmarks;
+
+import com.nascentdigital.device.geometry.CameraGeometry;
+import com.nascentdigital.device.geometry.PreviewConstraints;
+import com.nascentdigital.device.geometry.PreviewTransform;
+import com.nascentdigital.device.geometry.PreviewTransformCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class CameraGeometryBenchmark {
+
+    @Param({"0", "1"})
+    public int displayRotation;
+
+    private PreviewTransformCache _transforms;
+
+
+    @Setup
+    public void setup() {
+
+        // warm transform cache
+        _transforms = new PreviewTransformCache();
+        _transforms.get(1080, 1920, 1920, 1080, displayRotation);
+    }
+
+
+    @Benchmark
+    public PreviewTransform computeTransform() {
+        return PreviewTransform.compute(1080, 1920, 1920, 1080, displayRotation);
+    }
+
+    @Benchmark
+    public PreviewTransform cachedTransform() {
+        return _transforms.get(1080, 1920, 1920, 1080, displayRotation);
+    }
+
+    @Benchmark
+    public PreviewConstraints getPreviewConstraints() {
+        return CameraGeometry.getPreviewConstraints(1080, 1920, 1080, 2160,
+            displayRotation, 90, 1920, 1080);
+    }
+
+    @Benchmark
+    public int getJpegOrientation() {
+        return CameraGeometry.getJpegOrientation(displayRotation, 90);
+    }
+}
@@ -0,0 +1,39 @@
+package com.nascentdigital.benchmarks;
+
+import android.util.Size;
+
+
+final class CameraSizes {
+
+    // JPEG output sizes reported by a 12 MP rear camera
+    static final Size[] PHOTO_SIZES = sizes(
+        4032, 3024, 4000, 3000, 4032, 2268, 3840, 2160, 3264, 2448,
+        3024, 3024, 2976, 2976, 2592, 1944, 2688, 1512, 2048, 1536,
+        1920, 1440, 1920, 1080, 1600, 1200, 1440, 1080, 1280, 960,
+        1280, 768, 1280, 720, 1024, 768, 800, 600, 864, 480,
+        800, 480, 720, 480, 640, 480, 640, 360, 352, 288,
+        320, 240, 176, 144);
+
+    // SurfaceTexture output sizes reported by the same camera
+    static final Size[] PREVIEW_SIZES = sizes(
+        4032, 3024, 4000, 3000, 3840, 2160, 3264, 2448, 2592, 1944,
+        2048, 1536, 1920, 1440, 1920, 1080, 1600, 1200, 1440, 1080,
+        1280, 960, 1280, 768, 1280, 720, 1024, 768, 800, 600,
+        864, 480, 800, 480, 720, 480, 640, 480, 640, 360,
+        352, 288, 320, 240, 176, 144);
+
+    // largest photo size (aspect ratio used for preview selection)
+    static final Size PHOTO_SIZE = new Size(4032, 3024);
+
+
+    private CameraSizes() {
+    }
+
+    private static Size[] sizes(int... dimensions) {
+        Size[] sizes = new Size[dimensions.length / 2];
+        for (int i = 0; i < sizes.length; ++i) {
+            sizes[i] = new Size(dimensions[i * 2], dimensions[i * 2 + 1]);
+        }
+        return sizes;
+    }
+}
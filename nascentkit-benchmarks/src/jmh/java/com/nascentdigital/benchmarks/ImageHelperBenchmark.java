@@ -0,0 +1,67 @@
+package com.nascentdigital.benchmarks;
+
+import com.nascentdigital.graphics.ImageHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ImageHelperBenchmark {
+
+    @Param({"1048576", "4194304"})
+    public int jpegSize;
+
+    private ByteBuffer _jpeg;
+    private File _file;
+    private RandomAccessFile _output;
+    private FileChannel _channel;
+
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+
+        // simulate an image plane (direct, like ImageReader buffers)
+        _jpeg = ByteBuffer.allocateDirect(jpegSize);
+        for (int i = 0; i < jpegSize; ++i) {
+            _jpeg.put(i, (byte) i);
+        }
+
+        // open scratch output
+        _file = File.createTempFile("nascentkit", ".jpg");
+        _output = new RandomAccessFile(_file, "rw");
+        _channel = _output.getChannel();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        _channel.close();
+        _output.close();
+        _file.delete();
+    }
+
+    @Benchmark
+    public long writeBuffer() throws IOException {
+
+        // rewrite from the start each time (file stays the same size)
+        _channel.position(0);
+        return ImageHelper.writeBuffer(_jpeg, _channel);
+    }
+}
@@ -0,0 +1,54 @@
+package com.nascentdigital.benchmarks;
+
+import com.nascentdigital.device.geometry.OutputSizeIndex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PreviewSizeBenchmark {
+
+    @Param({"1080x2160", "1440x1080", "480x640", "4000x4000"})
+    public String viewSize;
+
+    private int _viewWidth;
+    private int _viewHeight;
+    private OutputSizeIndex _previewSizes;
+
+
+    @Setup
+    public void setup() {
+        String[] dimensions = viewSize.split("x");
+        _viewWidth = Integer.parseInt(dimensions[0]);
+        _viewHeight = Integer.parseInt(dimensions[1]);
+
+        // index preview sizes (CameraFeed builds this once per camera)
+        int[] widths = new int[CameraSizes.PREVIEW_SIZES.length];
+        int[] heights = new int[CameraSizes.PREVIEW_SIZES.length];
+        for (int i = 0; i < widths.length; ++i) {
+            widths[i] = CameraSizes.PREVIEW_SIZES[i].getWidth();
+            heights[i] = CameraSizes.PREVIEW_SIZES[i].getHeight();
+        }
+        _previewSizes = new OutputSizeIndex(widths, heights);
+    }
+
+    @Benchmark
+    public int chooseOptimalPreviewSize() {
+
+        // mirrors preview size selection in CameraFeed.planOutputs()
+        return _previewSizes.chooseOptimalSize(_viewWidth, _viewHeight,
+            1920, 1080, CameraSizes.PHOTO_SIZE.getWidth(),
+            CameraSizes.PHOTO_SIZE.getHeight());
+    }
+}
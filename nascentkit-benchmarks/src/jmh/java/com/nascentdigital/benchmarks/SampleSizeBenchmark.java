@@ -0,0 +1,29 @@
+package com.nascentdigital.benchmarks;
+
+import com.nascentdigital.graphics.ImageHelper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SampleSizeBenchmark {
+
+    @Param({"160", "320", "1080"})
+    public int targetSize;
+
+
+    @Benchmark
+    public int getSampleSize() {
+        return ImageHelper.getSampleSize(4032, 3024, targetSize);
+    }
+}
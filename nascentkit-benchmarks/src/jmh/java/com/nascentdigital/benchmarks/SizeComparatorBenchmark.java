@@ -0,0 +1,41 @@
+package com.nascentdigital.benchmarks;
+
+import android.util.Size;
+
+import com.nascentdigital.util.SizeComparator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SizeComparatorBenchmark {
+
+    private final Size[] _sizes = CameraSizes.PHOTO_SIZES;
+    private final SizeComparator _comparator = new SizeComparator();
+
+
+    @Benchmark
+    public Size maxPhotoSize() {
+
+        // mirrors photo size selection in CameraFeed.prepareOutputs()
+        return Collections.max(Arrays.asList(_sizes), new SizeComparator());
+    }
+
+    @Benchmark
+    public Size[] sortPhotoSizes() {
+        Size[] sizes = _sizes.clone();
+        Arrays.sort(sizes, _comparator);
+        return sizes;
+    }
+}
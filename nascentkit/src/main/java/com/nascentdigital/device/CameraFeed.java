@@ -3,6 +3,7 @@ package com.nascentdigital.device;
 import android.Manifest;
 import android.annotation.SuppressLint;
 import android.app.Activity;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
@@ -11,14 +12,15 @@ import android.graphics.BitmapFactory;
 import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Point;
+import android.graphics.Rect;
 import android.graphics.RectF;
-import android.graphics.SurfaceTexture;
 import android.hardware.camera2.CameraAccessException;
 import android.hardware.camera2.CameraCaptureSession;
 import android.hardware.camera2.CameraCharacteristics;
 import android.hardware.camera2.CameraDevice;
 import android.hardware.camera2.CameraManager;
 import android.hardware.camera2.CameraMetadata;
+import android.hardware.camera2.CaptureFailure;
 import android.hardware.camera2.CaptureRequest;
 import android.hardware.camera2.CaptureResult;
 import android.hardware.camera2.TotalCaptureResult;
@@ -27,33 +29,57 @@ import android.media.Image;
 import android.media.ImageReader;
 import android.os.Handler;
 import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.util.Log;
+import android.util.Range;
 import android.util.Size;
-import android.util.SparseIntArray;
 import android.view.Display;
 import android.view.Surface;
 
+import com.nascentdigital.device.backend.StillCaptureSequence;
+import com.nascentdigital.device.geometry.CameraGeometry;
+import com.nascentdigital.device.geometry.OutputSizeIndex;
+import com.nascentdigital.device.geometry.PreviewConstraints;
+import com.nascentdigital.device.geometry.PreviewTransform;
+import com.nascentdigital.device.geometry.PreviewTransformCache;
+import com.nascentdigital.device.geometry.RegionGeometry;
 import com.nascentdigital.graphics.ImageHelper;
-import com.nascentdigital.widget.AspectTextureView;
+import com.nascentdigital.graphics.JpegHelper;
+import com.nascentdigital.graphics.TiledPhoto;
+import com.nascentdigital.services.MemoryBudget;
+import com.nascentdigital.services.MemoryConsumer;
+import com.nascentdigital.widget.PreviewBackend;
 import com.nascentdigital.widget.ContextHelper;
 import com.nascentdigital.util.SizeComparator;
+import com.nascentdigital.util.StateMachine;
+import com.nascentdigital.util.TraceEvent;
+import com.nascentdigital.util.TraceLog;
 
-import java.nio.ByteBuffer;
+import java.io.File;
 import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
+import io.reactivex.Completable;
 import io.reactivex.Observable;
+import io.reactivex.ObservableEmitter;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
+import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.SingleEmitter;
 import io.reactivex.disposables.Disposable;
 import io.reactivex.disposables.Disposables;
-import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.functions.Action;
+import io.reactivex.schedulers.Schedulers;
+import io.reactivex.subjects.PublishSubject;
 
 
 public class CameraFeed {
@@ -67,54 +93,79 @@ public class CameraFeed {
         ERROR
     }
 
-    private enum PhotoCaptureState {
-        IDLE,
-        FOCUSING,
-        CAPTURE_INIT,
-        CAPTURING,
-        CAPTURED
-    }
-
     private static final String TAG = "nascent/CameraFeed";
     private static final int MAX_PREVIEW_WIDTH = 1920;
     private static final int MAX_PREVIEW_HEIGHT = 1080;
-    private static final SparseIntArray ORIENTATIONS = new SparseIntArray();
-
-    static {
-        ORIENTATIONS.append(Surface.ROTATION_0, 90);
-        ORIENTATIONS.append(Surface.ROTATION_90, 0);
-        ORIENTATIONS.append(Surface.ROTATION_180, 270);
-        ORIENTATIONS.append(Surface.ROTATION_270, 180);
-    }
+    private static final int DEFAULT_THUMBNAIL_SIZE = 320;
+    private static final int PHOTO_MAX_IMAGES = 2;
+    private static final long PREVIEW_SIZING_TIMEOUT = 1000;
+    private static final int SNAPSHOT_MAX_IMAGES = 3;
 
     private final Activity _activity;
     private final Display _display;
-    private final Object _stateLock;
-    private final BehaviorSubject<State> _state$;
-    private State _state;
+    private final StateMachine<State> _state;
 
     private final CameraManager _cameraManager;
     private final Semaphore _cameraBindingLock = new Semaphore(1);
+    private volatile int _feedGeneration;
+    private Map<CameraPosition, CameraDescriptor> _cameras;
+    private CameraPosition _cameraPosition;
     private String _cameraId;
     private CameraCharacteristics _cameraCharacteristics;
-    private StreamConfigurationMap _cameraConfigurationMap;
+    private CameraDescriptor _cameraDescriptor;
     private CameraDevice _camera;
+    private volatile long _cameraConnectTime;
     private boolean _canFlash;
     private CameraCaptureSession _cameraSession;
     private HandlerThread _captureThread;
     private Handler _captureHandler;
-    private PhotoCaptureState _captureState;
+    private Scheduler _captureScheduler;
+    private final Scheduler _cameraScheduler;
+    private StillCaptureSequence.State _captureState;
+    private CaptureBudget _captureBudget;
+    private volatile CaptureMode _captureMode;
+    private volatile boolean _snapshotsEnabled;
+    private final PublishSubject<CaptureReport> _captureReport$;
     private final PhotoPrecaptureCallback photoPrecaptureCallback;
     private final PhotoCaptureCallback _photoCaptureCallback;
     private final PreviewCaptureCallback _previewCaptureCallback;
     private int _cameraOrientation;
     private CaptureRequest.Builder _cameraRequestBuilder;
+    private String _cameraRequestCameraId;
     private ImageReader _cameraPhotoReader;
+    private volatile int _photoMaxImages;
+    private volatile long _photoMaxArea;
+    private volatile boolean _outputPlanTrimmed;
+    private final PhotoOutputMemory _photoOutputMemory;
     private Size _cameraPhotoSize;
+    private Size _cameraThumbnailSize;
     private int _photoOrientation;
-    private SingleEmitter<Bitmap> _photoEmitter;
+    private PhotoRequest _photoRequest;
+    private Image _pendingPhotoImage;
+    private long _pendingPhotoTimestamp;
+    private final CaptureMetadataTable _captureMetadata;
     private CaptureRequest _cameraPreviewRequest;
+    private CaptureRequest _cameraUnlockRequest;
     private Size _cameraPreviewSize;
+    private Surface _previewSurface;
+    private Disposable _previewSizing;
+    private ImageReader _snapshotReader;
+    private Size _snapshotSize;
+    private Surface _snapshotSurface;
+    private Image _snapshotImage;
+    private ImageReader _snapshotImageReader;
+    private final List<SnapshotRequest> _snapshotRequests;
+    private final Object _snapshotConversionLock;
+    private ImageReader _snapshotConversionReader;
+    private boolean _snapshotConversionRetired;
+    private int _outputPlanRotation;
+    private int _outputPlanWidth;
+    private int _outputPlanHeight;
+    private final PreviewTransformCache _previewTransforms;
+    private final Matrix _previewMatrix;
+    private final float[] _previewMatrixValues;
+    private PreviewTransform _previewTransformApplied;
+    private PreviewBackend _previewTransformView;
 
 
     CameraFeed(Context context) {
@@ -122,53 +173,164 @@ public class CameraFeed {
         // initialize instance variables
         _activity = ContextHelper.getActivity(context);
         _display = _activity.getWindowManager().getDefaultDisplay();
-        _stateLock = new Object();
-        _state$ = BehaviorSubject.createDefault(_state = State.UNINITIALIZED);
+        _state = new StateMachine<>("CameraFeed", State.class,
+            State.UNINITIALIZED, State.ERROR)
+            .allow(State.UNINITIALIZED, State.INITIALIZING)
+            .allow(State.INITIALIZING, State.CONNECTING, State.DISCONNECTED)
+            .allow(State.CONNECTING, State.CONNECTED, State.DISCONNECTED)
+            .allow(State.CONNECTED, State.CONNECTING, State.DISCONNECTED)
+            .allow(State.DISCONNECTED, State.INITIALIZING, State.CONNECTING)
+            .allow(State.ERROR, State.INITIALIZING, State.CONNECTING,
+                State.DISCONNECTED);
+        _cameraScheduler = new CameraScheduler();
+        _state.publishOn(_cameraScheduler);
         _cameraManager = (CameraManager) _activity
             .getSystemService(Context.CAMERA_SERVICE);
-        _captureState = PhotoCaptureState.IDLE;
+        _captureState = StillCaptureSequence.State.IDLE;
+        _captureBudget = CaptureBudget.DEFAULT;
+        _captureMode = CaptureMode.PAUSE_PREVIEW;
+        _captureReport$ = PublishSubject.create();
+        _captureMetadata = new CaptureMetadataTable();
+        _photoMaxImages = PHOTO_MAX_IMAGES;
+        _photoMaxArea = Long.MAX_VALUE;
+        _photoOutputMemory = new PhotoOutputMemory();
+        _snapshotRequests = new ArrayList<>();
+        _snapshotConversionLock = new Object();
+
+        // listen for memory pressure (photo buffers are accounted on start)
+        MemoryBudget.install(_activity);
         photoPrecaptureCallback = new PhotoPrecaptureCallback();
         _photoCaptureCallback = new PhotoCaptureCallback();
         _previewCaptureCallback = new PreviewCaptureCallback();
+        _previewTransforms = new PreviewTransformCache();
+        _previewMatrix = new Matrix();
+        _previewMatrixValues = new float[9];
+
+        // start capture thread / handler
+        startCaptureThread();
+    }
+
+    // NOTE: all CameraFeed streams (state, capture reports, photos) emit on
+    // the camera scheduler; hop to another thread once, at the consumer.
+    // The scheduler stays valid across stop() / start() (work runs on the
+    // calling thread while the feed is stopped)
+    public Scheduler cameraScheduler() {
+        return _cameraScheduler;
     }
 
     public State getState() {
-        synchronized (_stateLock) {
-            return _state;
-        }
+        return _state.getState();
+    }
+
+    public Throwable getError() {
+        return _state.getError();
     }
 
     private void setState(State state) {
-        synchronized (_stateLock) {
-            _state = state;
-            _state$.onNext(state);
-        }
+        TraceLog.record(TraceEvent.FEED_STATE, state.ordinal());
+        _state.transition(state);
     }
 
     private void setState(Exception error) {
-        synchronized (_stateLock) {
-            _state = State.ERROR;
-            _state$.onError(error);
-        }
+        TraceLog.record(TraceEvent.FEED_STATE, State.ERROR.ordinal());
+        _state.fail(error);
     }
 
     public Observable<State> observeState() {
-        synchronized (_stateLock) {
-            return _state$.distinctUntilChanged();
-        }
+
+        // NOTE: changes are published on the camera thread; subscribing there
+        // too keeps the replayed state on it as well
+        return _state.observe()
+            .subscribeOn(_cameraScheduler);
+    }
+
+    public CaptureBudget getCaptureBudget() {
+        return _captureBudget;
+    }
+
+    public void setCaptureBudget(@NonNull CaptureBudget captureBudget) {
+        _captureBudget = captureBudget;
+    }
+
+    public CaptureMode getCaptureMode() {
+        return _captureMode;
+    }
+
+    public void setCaptureMode(@NonNull CaptureMode captureMode) {
+        _captureMode = captureMode;
+    }
+
+    public boolean isSnapshotsEnabled() {
+        return _snapshotsEnabled;
+    }
+
+    // NOTE: adds a preview-resolution YUV stream for snapshot(); applied when
+    // outputs are next prepared (start, switchCamera or resume)
+    public void setSnapshotsEnabled(boolean snapshotsEnabled) {
+        _snapshotsEnabled = snapshotsEnabled;
+    }
+
+    public Observable<CaptureReport> observeCaptureReports() {
+
+        // NOTE: reports are raised on the camera thread already
+        return _captureReport$;
+    }
+
+    // NOTE: matches Image.getTimestamp() for frames captured in the last second
+    public CaptureMetadata getCaptureMetadata(long timestamp) {
+        return _captureMetadata.get(timestamp);
+    }
+
+    // NOTE: discovery, output preparation and open run on the camera thread;
+    // completes once the camera is connected
+    public Completable startAsync(CameraPosition cameraPosition,
+                                  PreviewBackend previewView) {
+        return Completable.defer(() -> {
+
+            // restart capture thread / handler if feed was stopped
+            if (_captureThread == null) {
+                startCaptureThread();
+            }
+
+            // start on the camera thread (aborted if the feed is stopped before
+            // the camera opens), then wait for the connection
+            final int generation = _feedGeneration;
+            return runOnCameraThread(
+                () -> start(cameraPosition, previewView, generation))
+                .andThen(awaitConnection());
+        });
+    }
+
+    public void start(CameraPosition cameraPosition, PreviewBackend previewView)
+        throws DeviceAccessException, DeviceDiscoveryException,
+               DeviceNotFoundException {
+        start(cameraPosition, previewView, _feedGeneration);
     }
 
     @SuppressLint("MissingPermission")
-    public void start(CameraPosition cameraPosition, AspectTextureView previewView)
+    private void start(CameraPosition cameraPosition, PreviewBackend previewView,
+                       int generation)
         throws DeviceAccessException, DeviceDiscoveryException,
                DeviceNotFoundException {
 
+        // skip if the feed was stopped while this start was queued
+        if (generation != _feedGeneration) {
+            throw new DeviceAccessException(
+                "Camera feed was stopped before it started.");
+        }
+
         Log.d(TAG, "starting camera feed");
 
-        // start capture thread / handler
-        _captureThread = new HandlerThread("CameraFeed Capture");
-        _captureThread.start();
-        _captureHandler = new Handler(_captureThread.getLooper());
+        // restart capture thread / handler if feed was stopped
+        if (_captureThread == null) {
+            startCaptureThread();
+        }
+
+        // account photo buffers (no-op if already registered), restoring
+        // full-size outputs trimmed by earlier memory pressure
+        MemoryBudget.getInstance().register(_photoOutputMemory);
+        _photoMaxImages = PHOTO_MAX_IMAGES;
+        _photoMaxArea = Long.MAX_VALUE;
 
         Log.v(TAG, "verifying camera permission");
 
@@ -215,6 +377,121 @@ public class CameraFeed {
         prepareOutputs(previewView);
         updatePreviewTransform(previewView);
 
+        // open camera connection
+        openCamera(previewView, generation);
+    }
+
+    // NOTE: runs on the camera thread once any open in flight has settled;
+    // emits the switch latency once the new camera is connected
+    public Single<Long> switchCamera(CameraPosition cameraPosition,
+                                     PreviewBackend previewView) {
+        return Single.defer(() -> {
+
+            // switch on the camera thread, then wait for the connection
+            final int generation = _feedGeneration;
+            return awaitCameraSettled()
+                .andThen(callOnCameraThread(
+                    () -> switchTo(cameraPosition, previewView, generation)))
+                .flatMap(switchTime -> {
+
+                    // skip if camera was already in use
+                    if (switchTime < 0) {
+                        return Single.just(0L);
+                    }
+
+                    // report latency once connected (or fail)
+                    return awaitConnection()
+                        .toSingle(() -> {
+                            long latency = _cameraConnectTime - switchTime;
+                            Log.d(TAG, "switched to " + cameraPosition
+                                + " camera in " + latency + " ms");
+                            return latency;
+                        });
+                });
+        });
+    }
+
+    private long switchTo(CameraPosition cameraPosition,
+                          PreviewBackend previewView, int generation)
+        throws DeviceAccessException, DeviceDiscoveryException,
+               DeviceNotFoundException {
+
+        // skip if camera is already in use
+        if (cameraPosition == _cameraPosition && _camera != null) {
+            return -1;
+        }
+
+        Log.d(TAG, "switching camera feed to " + cameraPosition);
+
+        // release current camera (capture thread, outputs and discovery are kept)
+        final long switchTime = SystemClock.elapsedRealtime();
+        try {
+
+            // acquire binding lock
+            _cameraBindingLock.acquire();
+
+            // close camera
+            closeCamera();
+        }
+
+        // handle interruption during lock acquisition
+        catch (InterruptedException e) {
+
+            // update state with error
+            DeviceAccessException error = new DeviceAccessException(
+                "Interrupted while trying to acquire camera binding lock.", e);
+            setState(error);
+
+            // throw
+            throw error;
+        }
+
+        // ensure lock is released
+        finally {
+            _cameraBindingLock.release();
+        }
+
+        // find camera matching position (uses cached discovery)
+        try {
+            resolveCamera(cameraPosition);
+        }
+
+        // rethrow if the device isn't found
+        catch (DeviceNotFoundException e) {
+
+            // update state with error
+            setState(e);
+
+            // re-throw
+            throw e;
+        }
+
+        // throw a discovery exception
+        catch (Exception e) {
+
+            // update state with error
+            DeviceDiscoveryException error = new DeviceDiscoveryException(
+                "Unable to enumerate connected cameras.", e);
+            setState(error);
+
+            // throw
+            throw error;
+        }
+
+        // prepare outputs (reuses compatible readers)
+        prepareOutputs(previewView);
+        updatePreviewTransform(previewView);
+
+        // open camera connection
+        openCamera(previewView, generation);
+
+        return switchTime;
+    }
+
+    @SuppressLint("MissingPermission")
+    private void openCamera(PreviewBackend previewView, int generation)
+        throws DeviceAccessException {
+
         // open camera connection
         try {
 
@@ -225,7 +502,15 @@ public class CameraFeed {
                 throw new DeviceAccessException("Time out waiting on camera binding lock.");
             }
 
-            Log.v(TAG, "opening connection to camera");
+            // abort if the feed was stopped since the open was requested (its
+            // capture thread is quitting)
+            if (generation != _feedGeneration || _cameraId == null) {
+                _cameraBindingLock.release();
+                throw new DeviceAccessException(
+                    "Camera feed was stopped before the camera opened.");
+            }
+
+            TraceLog.record(TraceEvent.CAMERA_OPEN, _cameraId.hashCode());
 
             // attempt to connect to camera
             _cameraManager
@@ -269,20 +554,13 @@ public class CameraFeed {
             // acquire binding lock
             _cameraBindingLock.acquire();
 
-            // release session
-            if (_cameraSession != null) {
-                Log.v(TAG, "closing camera session");
-                _cameraSession.close();
-                _cameraSession = null;
-            }
+            // abandon starts that haven't opened the camera yet
+            _feedGeneration++;
 
-            // release device
-            if (_camera != null) {
-                Log.v(TAG, "closing camera");
-                _camera.close();
-                _camera = null;
-                _cameraId = null;
-            }
+            // release session and device
+            closeCamera();
+            _cameraId = null;
+            _cameraPosition = null;
 
             // release photo reader
             if (_cameraPhotoReader != null) {
@@ -290,6 +568,26 @@ public class CameraFeed {
                 _cameraPhotoReader = null;
             }
 
+            // release snapshot reader and fail waiting snapshots (on the
+            // capture thread, which owns snapshot state); its target is dropped
+            // from the request builder on the next bind
+            if (_snapshotReader != null) {
+                retireSnapshotReader(_snapshotReader);
+                _snapshotReader = null;
+            }
+            _cameraScheduler.scheduleDirect(() -> failSnapshots(
+                new IllegalStateException("Camera feed was stopped.")));
+
+            // forget preview surface (released by the preview backend)
+            _previewSurface = null;
+
+            // stop memory accounting
+            MemoryBudget.getInstance().unregister(_photoOutputMemory);
+
+            // forget applied transform (view is re-bound on start)
+            _previewTransformApplied = null;
+            _previewTransformView = null;
+
             // mark disconnected
             setState(State.DISCONNECTED);
         }
@@ -324,6 +622,7 @@ public class CameraFeed {
                 _captureThread.join();
                 _captureThread = null;
                 _captureHandler = null;
+                _captureScheduler = null;
             }
 
             // handle exceptions
@@ -333,283 +632,915 @@ public class CameraFeed {
         }
     }
 
-    public Single<Bitmap> takePhoto() {
-
-        // fail immediately if a photo is already in flight
-        if (_photoEmitter != null) {
-            return Single.error(new IllegalStateException(
-                "Attempt to take concurrent photos."));
-        }
+    // NOTE: runs on the camera thread once any open in flight has settled
+    public Completable suspend() {
+        return Completable.defer(() -> awaitCameraSettled()
+            .andThen(runOnCameraThread(this::suspendCamera)));
+    }
 
-        // initiate photo
-        return Single.create(single -> {
+    private void suspendCamera() throws DeviceAccessException {
 
-            // track emitter and add cleanup
-            _photoEmitter = single;
-            _photoEmitter.setDisposable(Disposables.fromAction(
-                () -> _photoEmitter = null));
+        Log.d(TAG, "suspending camera feed");
 
-            // try to lock camera focus
-            try {
+        // release camera device only (outputs and capture thread are kept)
+        try {
 
-                // build request
-                _cameraRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
-                    CameraMetadata.CONTROL_AF_TRIGGER_START);
+            // acquire binding lock
+            _cameraBindingLock.acquire();
 
-                // Tell #mCaptureCallback to wait for the lock.
-                _captureState = PhotoCaptureState.FOCUSING;
-                _cameraSession.capture(_cameraRequestBuilder.build(),
-                    photoPrecaptureCallback, _captureHandler);
-            }
+            // release session and device
+            closeCamera();
 
-            // handle exception
-            catch (CameraAccessException e) {
-                _photoEmitter.onError(
-                    new DeviceAccessException("Camera device is unavailable.", e));
-            }
-        });
-    }
+            // mark disconnected
+            setState(State.DISCONNECTED);
+        }
 
-    public void updatePreviewTransform(AspectTextureView previewView) {
+        // handle interruption during lock acquisition
+        catch (InterruptedException e) {
 
-        // capture existing sizing inputs
-        final int previewWidth = previewView.getWidth();
-        final int previewHeight = previewView.getHeight();
-        final int imageWidth = _cameraPreviewSize.getWidth();
-        final int imageHeight = _cameraPreviewSize.getHeight();
-        final RectF previewRect = new RectF(0, 0, previewWidth, previewHeight);
-        final RectF imageRect = new RectF(0, 0, imageHeight, imageWidth);
-        final float centerX = previewRect.centerX();
-        final float centerY = previewRect.centerY();
+            // update state with error
+            DeviceAccessException error = new DeviceAccessException(
+                "Interrupted while trying to acquire camera binding lock.", e);
+            setState(error);
 
-        Log.v(TAG, "updating preview transform ("
-            + imageWidth + ", " + imageHeight + ") -> ("
-            + previewWidth + ", " + previewHeight + ")");
+            // throw
+            throw error;
+        }
 
-        // setup rotate and fit if rotated perpendicularly
-        final Matrix matrix = new Matrix();
-        final int rotation = _display.getRotation();
-        if (Surface.ROTATION_90 == rotation
-            || Surface.ROTATION_270 == rotation) {
+        // ensure lock is released
+        finally {
+            _cameraBindingLock.release();
+        }
+    }
 
-            // center image
-            imageRect.offset(centerX - imageRect.centerX(),
-                centerY - imageRect.centerY());
-            matrix
-                .setRectToRect(previewRect, imageRect, Matrix.ScaleToFit.FILL);
+    // NOTE: runs on the camera thread once any open in flight has settled;
+    // completes once the camera is connected
+    public Completable resume(PreviewBackend previewView) {
+        return Completable.defer(() -> {
+
+            // resume on the camera thread, then wait for the connection
+            final int generation = _feedGeneration;
+            return awaitCameraSettled()
+                .andThen(runOnCameraThread(
+                    () -> resumeCamera(previewView, generation)))
+                .andThen(awaitConnection());
+        });
+    }
 
-            // scale
-            float scale = Math.max(
-                (float) previewHeight / imageHeight,
-                (float) previewWidth / imageWidth);
-            matrix.postScale(scale, scale, centerX, centerY);
+    private void resumeCamera(PreviewBackend previewView, int generation)
+        throws DeviceAccessException {
 
-            // apply rotation
-            matrix.postRotate(90 * (rotation - 2), centerX, centerY);
+        // skip if camera is already open (or opening)
+        State state = getState();
+        if (_camera != null
+            || state == State.CONNECTING
+            || state == State.CONNECTED) {
+            Log.d(TAG, "ignoring resume() - already active");
+            return;
+        }
 
-            Log.v(TAG, "rotating 90 degress and scaling by " + scale);
+        // fail if the feed was never started
+        if (_cameraId == null) {
+            throw new DeviceAccessException(
+                "CameraFeed must be started before it can be resumed.");
         }
 
-        // or just apply rotation if upside down
-        else if (Surface.ROTATION_180 == rotation) {
-            matrix.postRotate(180, centerX, centerY);
+        Log.d(TAG, "resuming camera feed");
+
+        // reuse output plan if display rotation / view size are unchanged
+        if (isOutputPlanValid(previewView)) {
+            Log.v(TAG, "reusing camera output plan");
+        }
 
-            Log.v(TAG, "rotating 180 degress");
+        // or rebuild outputs (reuses compatible readers)
+        else {
+            prepareOutputs(previewView);
+            updatePreviewTransform(previewView);
         }
 
-        // update preview transformation using matrix
-        previewView.setTransform(matrix);
+        // open camera connection
+        openCamera(previewView, generation);
     }
 
-    private void resolveCamera(CameraPosition cameraPosition)
-        throws CameraAccessException, DeviceNotFoundException {
+    private Completable runOnCameraThread(Action action) {
 
-        Log.v(TAG, "searching for " + cameraPosition + " camera.");
+        // NOTE: errors raised once the subscriber is gone are dropped rather
+        // than reported as undeliverable
+        return Completable
+            .create(emitter -> {
+                try {
+                    action.run();
+                    emitter.onComplete();
+                }
+                catch (Exception e) {
+                    emitter.tryOnError(e);
+                }
+            })
+            .subscribeOn(_cameraScheduler);
+    }
 
-        // search for camera using the registered devices
-        String cameraId = null;
-        for (String id : _cameraManager.getCameraIdList()) {
+    private <T> Single<T> callOnCameraThread(Callable<T> callable) {
+        return Single
+            .<T>create(emitter -> {
+                try {
+                    emitter.onSuccess(callable.call());
+                }
+                catch (Exception e) {
+                    emitter.tryOnError(e);
+                }
+            })
+            .subscribeOn(_cameraScheduler);
+    }
 
-            // get device details (skip if details are missing)
-            CameraCharacteristics characteristics = _cameraManager
-                .getCameraCharacteristics(id);
-            Integer lensFacing = characteristics
-                .get(CameraCharacteristics.LENS_FACING);
-            if (lensFacing == null) {
-                continue;
-            }
+    // NOTE: the binding lock held by an open in flight is released by a
+    // callback on the camera thread, so camera thread work that takes the
+    // lock waits for the open to settle first
+    private Completable awaitCameraSettled() {
+        return observeState()
+            .filter(state -> state != State.INITIALIZING
+                && state != State.CONNECTING)
+            .firstOrError()
+            .ignoreElement();
+    }
 
-            // determine camera position
-            CameraPosition position;
-            switch (lensFacing) {
-                case CameraMetadata.LENS_FACING_FRONT:
-                    position = CameraPosition.FRONT;
-                    break;
-                case CameraMetadata.LENS_FACING_BACK:
-                    position = CameraPosition.BACK;
-                    break;
-                default:
-                    position = CameraPosition.EXTERNAL;
-                    break;
-            }
+    private Completable awaitConnection() {
+        return observeState()
+            .filter(state -> state == State.CONNECTED || state == State.ERROR)
+            .firstOrError()
+            .flatMapCompletable(state -> state == State.ERROR
+                ? Completable.error(getError())
+                : Completable.complete());
+    }
 
-            // use camera if matching
-            if (position == cameraPosition) {
+    private boolean isOutputPlanValid(PreviewBackend previewView) {
+        return _cameraPreviewSize != null
+            && _cameraPhotoReader != null
+            && !_outputPlanTrimmed
+            && (_snapshotReader != null) == _snapshotsEnabled
+            && _outputPlanRotation == _display.getRotation()
+            && _outputPlanWidth == previewView.getWidth()
+            && _outputPlanHeight == previewView.getHeight();
+    }
 
-                // don't use camera if there isn't a map
-                StreamConfigurationMap map = characteristics.get(
-                    CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
-                if (map == null) {
-                    continue;
-                }
+    private void startCaptureThread() {
 
-                Log.v(TAG, "Found camera: " + id);
+        // start capture thread / handler
+        _captureThread = new HandlerThread("CameraFeed Capture");
+        _captureThread.start();
+        _captureHandler = new Handler(_captureThread.getLooper());
+        _captureScheduler = AndroidSchedulers.from(_captureThread.getLooper());
+    }
 
-                // assign camera
-                _cameraId = id;
-                _cameraCharacteristics = characteristics;
-                _cameraConfigurationMap = map;
+    private void closeCamera() {
 
-                // capture capabilities
-                Boolean canFlash = characteristics.get(
-                    CameraCharacteristics.FLASH_INFO_AVAILABLE);
-                _canFlash = canFlash == null ? false : canFlash;
+        // stop waiting on preview sizing
+        if (_previewSizing != null) {
+            _previewSizing.dispose();
+            _previewSizing = null;
+        }
 
-                // stop searching
-                break;
-            }
+        // release session
+        if (_cameraSession != null) {
+            Log.v(TAG, "closing camera session");
+            _cameraSession.close();
+            _cameraSession = null;
         }
 
-        // throw if there was no matching device
-        if (_cameraId == null) {
-            throw new DeviceNotFoundException(
-                "Unable to find connected camera in " + cameraPosition
-                    + " position");
+        // release device
+        if (_camera != null) {
+            Log.v(TAG, "closing camera");
+            _camera.close();
+            _camera = null;
         }
-    }
 
-    @SuppressWarnings("SuspiciousNameCombination")
-    private void prepareOutputs(AspectTextureView previewView) {
+        // reset capture state
+        photoPrecaptureCallback.cancel();
+        _cameraUnlockRequest = null;
+        _captureMetadata.clear();
+
+        // fail photo in flight (its capture can't complete on a closed camera)
+        final PhotoRequest photoRequest = _photoRequest;
+        if (photoRequest != null) {
+            _photoRequest = null;
+            photoRequest.onError(new DeviceAccessException(
+                "Camera was closed before the photo was captured."));
+        }
 
-        Log.v(TAG, "preparing photo output");
+        // drop photo image still waiting for its capture result
+        if (_pendingPhotoImage != null) {
+            _pendingPhotoImage.close();
+            _pendingPhotoImage = null;
+        }
 
-        // create image reader for capturing images (capture largest size available)
-        _cameraPhotoSize = Collections.max(
-            Arrays.asList(_cameraConfigurationMap
-                .getOutputSizes(ImageFormat.JPEG)),
-            new SizeComparator());
-        _cameraPhotoReader = ImageReader.newInstance(
-            _cameraPhotoSize.getWidth(), _cameraPhotoSize.getHeight(),
-            ImageFormat.JPEG, 2);
-        _cameraPhotoReader.setOnImageAvailableListener(
-            new ImageProcessor(), _captureHandler);
+        // drop latest snapshot frame on the capture thread (pending snapshots
+        // wait for the next camera)
+        _cameraScheduler.scheduleDirect(this::releaseSnapshotImage);
+    }
 
-        // determine camera orientation
-        _cameraOrientation = _cameraCharacteristics
-            .get(CameraCharacteristics.SENSOR_ORIENTATION);
+    public Single<Bitmap> takePhoto() {
+        return capturePhoto()
+            .map(Photo::getBitmap);
+    }
 
-        // figure out if we need to flip display axis to match camera
-        boolean flipAxis = false;
-        switch (_display.getRotation()) {
+    public Single<Photo> capturePhoto() {
 
-            case Surface.ROTATION_0:
-            case Surface.ROTATION_180:
-                if (_cameraOrientation == 90 || _cameraOrientation == 270) {
-                    flipAxis = true;
-                }
-                break;
+        // fail immediately if a photo is already in flight
+        if (_photoRequest != null) {
+            return Single.error(new IllegalStateException(
+                "Attempt to take concurrent photos."));
+        }
 
-            case Surface.ROTATION_90:
-            case Surface.ROTATION_270:
-                if (_cameraOrientation == 0 || _cameraOrientation == 180) {
-                    flipAxis = true;
-                }
-                break;
+        // initiate photo
+        return Single.<Photo>create(single ->
+            startPhoto(new BitmapPhotoRequest(single)))
+            .subscribeOn(_cameraScheduler);
+    }
 
-            default:
-                Log.e(TAG, "display rotation is invalid: "
-                    + _display.getRotation());
-                break;
-        }
+    public Single<Bitmap> takePhoto(RectF region) {
+        return capturePhoto(region)
+            .map(Photo::getBitmap);
+    }
 
-        Size previewSize = previewView.getSize();
-        Log.v(TAG, "preparing preview output for " + previewSize);
+    // NOTE: region is normalized (0 - 1) in upright photo coordinates
+    public Single<Photo> capturePhoto(RectF region) {
 
-        // determine preview dimension variables
-        Point displaySize = new Point();
-        _display.getSize(displaySize);
-        int adjustedWidth, adjustedHeight;
-        int maxWidth, maxHeight;
-        if (flipAxis) {
-            adjustedWidth = previewSize.getHeight();
-            adjustedHeight = previewSize.getWidth();
-            maxWidth = displaySize.y;
-            maxHeight = displaySize.x;
+        // fail immediately if region is invalid
+        final float[] normalizedRegion = {
+            region.left, region.top, region.right, region.bottom };
+        if (!RegionGeometry.isValidRegion(normalizedRegion)) {
+            return Single.error(new IllegalArgumentException(
+                "Region must be a non-empty rect within (0, 0, 1, 1): " + region));
         }
-        else {
-            adjustedWidth = previewSize.getWidth();
-            adjustedHeight = previewSize.getHeight();
-            maxWidth = displaySize.x;
-            maxHeight = displaySize.y;
+
+        // fail immediately if a photo is already in flight
+        if (_photoRequest != null) {
+            return Single.error(new IllegalStateException(
+                "Attempt to take concurrent photos."));
         }
 
-        // clamp max dimensions
-        if (maxWidth > MAX_PREVIEW_WIDTH) {
-            maxWidth = MAX_PREVIEW_WIDTH;
+        // initiate photo
+        return Single.<Photo>create(single ->
+            startPhoto(new RegionPhotoRequest(single, normalizedRegion)))
+            .subscribeOn(_cameraScheduler);
+    }
+
+    public Single<TiledPhoto> takeTiledPhoto() {
+
+        // fail immediately if a photo is already in flight
+        if (_photoRequest != null) {
+            return Single.error(new IllegalStateException(
+                "Attempt to take concurrent photos."));
         }
-        if (maxHeight > MAX_PREVIEW_HEIGHT) {
-            maxHeight = MAX_PREVIEW_HEIGHT;
+
+        // initiate photo
+        return Single.<TiledPhoto>create(single ->
+            startPhoto(new TiledPhotoRequest(single)))
+            .subscribeOn(_cameraScheduler);
+    }
+
+    public Single<PhotoFile> takePhotoToFile(File file) {
+
+        // fail immediately if a photo is already in flight
+        if (_photoRequest != null) {
+            return Single.error(new IllegalStateException(
+                "Attempt to take concurrent photos."));
         }
 
-        // determine the best preview size
-        _cameraPreviewSize = chooseOptimalPreviewSize(
-            _cameraConfigurationMap.getOutputSizes(SurfaceTexture.class),
-            adjustedWidth, adjustedHeight, maxWidth, maxHeight,
+        // initiate photo
+        return Single.<PhotoFile>create(single ->
+            startPhoto(new FilePhotoRequest(single, file)))
+            .subscribeOn(_cameraScheduler);
+    }
+
+    public Single<Bitmap> takeSnapshot() {
+        return snapshot()
+            .map(Photo::getBitmap);
+    }
+
+    // NOTE: grabs the latest preview-resolution frame, skipping focus and
+    // precapture; safe to call while a photo is in flight
+    public Single<Photo> snapshot() {
+
+        // fail immediately if the snapshot stream is disabled
+        if (!_snapshotsEnabled) {
+            return Single.error(new IllegalStateException(
+                "Snapshots must be enabled before the feed is started."));
+        }
+
+        // initiate snapshot
+        return Single.<Photo>create(single ->
+            startSnapshot(new SnapshotRequest(single)))
+            .subscribeOn(_cameraScheduler);
+    }
+
+    private void startSnapshot(SnapshotRequest request) {
+
+        // fail if there's no stream to grab frames from
+        if (_snapshotReader == null) {
+            request.onError(new IllegalStateException(
+                "Snapshots can not be taken until started."));
+            return;
+        }
+
+        // deliver latest frame (or wait for the first one)
+        TraceLog.record(TraceEvent.SNAPSHOT_START);
+        _snapshotRequests.add(request);
+        deliverSnapshots();
+    }
+
+    private void deliverSnapshots() {
+
+        // skip until there's a frame for waiting requests
+        if (_snapshotImage == null || _snapshotRequests.isEmpty()) {
+            return;
+        }
+
+        // skip while the previous frame is converting (requests get the next)
+        synchronized (_snapshotConversionLock) {
+            if (_snapshotConversionReader != null) {
+                return;
+            }
+            _snapshotConversionReader = _snapshotImageReader;
+        }
+
+        // detach frame and waiting requests
+        final Image image = _snapshotImage;
+        _snapshotImage = null;
+        _snapshotImageReader = null;
+        final List<SnapshotRequest> requests = new ArrayList<>(_snapshotRequests);
+        _snapshotRequests.clear();
+
+        // resolve frame details
+        final CaptureMetadata metadata = _captureMetadata.get(image.getTimestamp());
+        final int orientation = CameraGeometry.getJpegOrientation(
+            _display.getRotation(), _cameraOrientation);
+        final Handler captureHandler = _captureHandler;
+
+        // convert frame once, off the capture thread
+        Schedulers.computation().scheduleDirect(() -> {
+
+            // convert and rotate to match a photo taken now (frame is closed
+            // as soon as its pixels are copied)
+            Photo photo = null;
+            Exception error = null;
+            TraceLog.begin(TraceEvent.SNAPSHOT_DELIVER);
+            try (Image frame = image) {
+                final Bitmap bitmap = ImageHelper.createBitmapFromYuv(frame);
+                photo = new Photo(ImageHelper.rotateBitmap(bitmap, orientation),
+                    orientation, metadata);
+            }
+            catch (Exception e) {
+                error = e;
+            }
+            finally {
+                TraceLog.end();
+                finishSnapshotConversion();
+            }
+
+            // deliver the same photo to every request
+            for (SnapshotRequest request : requests) {
+                if (photo != null) {
+                    request.onPhoto(photo);
+                }
+                else {
+                    request.onError(error);
+                }
+                TraceLog.record(TraceEvent.SNAPSHOT_DELIVER,
+                    (int) (SystemClock.elapsedRealtime() - request._requestTime));
+            }
+
+            // serve requests that arrived during conversion
+            if (captureHandler != null) {
+                captureHandler.post(this::deliverSnapshots);
+            }
+        });
+    }
+
+    private void finishSnapshotConversion() {
+
+        // release conversion (closing its reader if it was retired meanwhile)
+        final ImageReader retiredReader;
+        synchronized (_snapshotConversionLock) {
+            retiredReader = _snapshotConversionRetired
+                ? _snapshotConversionReader
+                : null;
+            _snapshotConversionReader = null;
+            _snapshotConversionRetired = false;
+        }
+        if (retiredReader != null) {
+            retiredReader.close();
+        }
+    }
+
+    private void retireSnapshotReader(ImageReader reader) {
+
+        // release on the capture thread (it owns the latest frame)
+        _cameraScheduler.scheduleDirect(() -> {
+
+            // stop listening and drop the frame held from this reader
+            reader.setOnImageAvailableListener(null, null);
+            if (_snapshotImageReader == reader) {
+                releaseSnapshotImage();
+            }
+
+            // close reader (deferred while one of its frames is converting)
+            synchronized (_snapshotConversionLock) {
+                if (_snapshotConversionReader == reader) {
+                    _snapshotConversionRetired = true;
+                    return;
+                }
+            }
+            reader.close();
+        });
+    }
+
+    private void releaseSnapshotImage() {
+
+        // drop latest snapshot frame
+        if (_snapshotImage != null) {
+            _snapshotImage.close();
+            _snapshotImage = null;
+            _snapshotImageReader = null;
+        }
+    }
+
+    private void failSnapshots(Throwable error) {
+
+        // fail snapshots still waiting for a frame
+        while (!_snapshotRequests.isEmpty()) {
+            _snapshotRequests.remove(0).onError(error);
+        }
+    }
+
+    public Observable<PhotoStage> takePhotoProgressive() {
+
+        // fail immediately if a photo is already in flight
+        if (_photoRequest != null) {
+            return Observable.error(new IllegalStateException(
+                "Attempt to take concurrent photos."));
+        }
+
+        // initiate photo
+        return Observable.<PhotoStage>create(observer ->
+            startPhoto(new ProgressivePhotoRequest(observer)))
+            .subscribeOn(_cameraScheduler);
+    }
+
+    private void startPhoto(PhotoRequest request) {
+
+        // fail if there's no session to capture with
+        if (_cameraSession == null) {
+            request.onError(new IllegalStateException(
+                "Photos can not be taken until the camera is connected."));
+            return;
+        }
+
+        // track request (cleared when the request is disposed)
+        TraceLog.record(TraceEvent.PHOTO_START);
+        _photoRequest = request;
+
+        // try to lock camera focus
+        try {
+
+            // restore preview loop if focus unlock is still pending
+            if (_cameraUnlockRequest != null) {
+                _cameraUnlockRequest = null;
+                _cameraSession.setRepeatingRequest(_cameraPreviewRequest,
+                    _previewCaptureCallback, _captureHandler);
+            }
+
+            // build request
+            _cameraRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
+                CameraMetadata.CONTROL_AF_TRIGGER_START);
+
+            // Tell #mCaptureCallback to wait for the lock.
+            photoPrecaptureCallback.begin();
+            _cameraSession.capture(_cameraRequestBuilder.build(),
+                photoPrecaptureCallback, _captureHandler);
+        }
+
+        // handle exception
+        catch (CameraAccessException e) {
+            request.onError(
+                new DeviceAccessException("Camera device is unavailable.", e));
+        }
+    }
+
+    public void updatePreviewTransform(PreviewBackend previewView) {
+
+        // marshal to the main thread (transform cache and view are main-thread only)
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            _activity.runOnUiThread(() -> updatePreviewTransform(previewView));
+            return;
+        }
+
+        // capture existing sizing inputs
+        final int previewWidth = previewView.getWidth();
+        final int previewHeight = previewView.getHeight();
+        final int imageWidth = _cameraPreviewSize.getWidth();
+        final int imageHeight = _cameraPreviewSize.getHeight();
+
+        // track view size the output plan is applied to
+        _outputPlanWidth = previewWidth;
+        _outputPlanHeight = previewHeight;
+
+        // skip if the backend orients the preview itself
+        if (!previewView.supportsTransform()) {
+            return;
+        }
+
+        // resolve rotate / fit transform (computed once per sizing inputs)
+        final int misses = _previewTransforms.getMisses();
+        final PreviewTransform transform = _previewTransforms.get(
+            previewWidth, previewHeight, imageWidth, imageHeight,
+            _display.getRotation());
+        if (_previewTransforms.getMisses() != misses) {
+            TraceLog.record(TraceEvent.PREVIEW_TRANSFORM, previewWidth,
+                previewHeight);
+        }
+
+        // skip if transform is already applied to this view
+        if (transform == _previewTransformApplied
+            && previewView == _previewTransformView) {
+            return;
+        }
+
+        // update preview transformation using shared matrix (view copies it)
+        transform.getValues(_previewMatrixValues);
+        _previewMatrix.setValues(_previewMatrixValues);
+        previewView.setTransform(_previewMatrix);
+        _previewTransformApplied = transform;
+        _previewTransformView = previewView;
+    }
+
+    private void resolveCamera(CameraPosition cameraPosition)
+        throws CameraAccessException, DeviceNotFoundException {
+
+        // discover cameras once per feed
+        if (_cameras == null) {
+            _cameras = discoverCameras();
+        }
+
+        Log.v(TAG, "searching for " + cameraPosition + " camera.");
+
+        // throw if there was no matching device
+        CameraDescriptor camera = _cameras.get(cameraPosition);
+        if (camera == null) {
+            throw new DeviceNotFoundException(
+                "Unable to find connected camera in " + cameraPosition
+                    + " position");
+        }
+
+        // assign camera
+        _cameraPosition = cameraPosition;
+        _cameraId = camera.id;
+        _cameraCharacteristics = camera.characteristics;
+        _cameraDescriptor = camera;
+        _canFlash = camera.canFlash;
+
+        // keep a second of frame metadata at the camera's fastest frame rate
+        _captureMetadata.setMaxFrameRate(camera.maxFrameRate);
+    }
+
+    private Map<CameraPosition, CameraDescriptor> discoverCameras()
+        throws CameraAccessException {
+
+        // search for cameras using the registered devices
+        Map<CameraPosition, CameraDescriptor> cameras
+            = new EnumMap<>(CameraPosition.class);
+        for (String id : _cameraManager.getCameraIdList()) {
+
+            // get device details (skip if details are missing)
+            CameraCharacteristics characteristics = _cameraManager
+                .getCameraCharacteristics(id);
+            Integer lensFacing = characteristics
+                .get(CameraCharacteristics.LENS_FACING);
+            if (lensFacing == null) {
+                continue;
+            }
+
+            // determine camera position
+            CameraPosition position;
+            switch (lensFacing) {
+                case CameraMetadata.LENS_FACING_FRONT:
+                    position = CameraPosition.FRONT;
+                    break;
+                case CameraMetadata.LENS_FACING_BACK:
+                    position = CameraPosition.BACK;
+                    break;
+                default:
+                    position = CameraPosition.EXTERNAL;
+                    break;
+            }
+
+            // skip if a camera is already registered for position
+            if (cameras.containsKey(position)) {
+                continue;
+            }
+
+            // don't use camera if there isn't a map
+            StreamConfigurationMap map = characteristics.get(
+                CameraCharacteristics.SCALER_STREAM_CONFIGURATION_MAP);
+            if (map == null) {
+                continue;
+            }
+
+            Log.v(TAG, "Found " + position + " camera: " + id);
+
+            // capture capabilities
+            Boolean canFlash = characteristics.get(
+                CameraCharacteristics.FLASH_INFO_AVAILABLE);
+
+            // register camera
+            cameras.put(position, new CameraDescriptor(id, characteristics,
+                map, canFlash == null ? false : canFlash));
+        }
+
+        // return cameras
+        return cameras;
+    }
+
+    private void prepareOutputs(PreviewBackend previewView) {
+
+        // plan outputs inside a trace section
+        TraceLog.begin(TraceEvent.PREPARE_OUTPUTS);
+        try {
+            planOutputs(previewView);
+        }
+        finally {
+            TraceLog.end();
+        }
+
+        // shrink library pools if the new outputs push usage over budget
+        MemoryBudget.getInstance().enforce();
+    }
+
+    @SuppressWarnings("SuspiciousNameCombination")
+    private void planOutputs(PreviewBackend previewView) {
+
+        // determine photo size (largest size available within memory limits)
+        OutputSizes photoSizes = _cameraDescriptor.photoSizes;
+        Size photoSize = photoSizes.get(
+            photoSizes.index.largestAtMost(_photoMaxArea));
+        if (photoSize == null) {
+            photoSize = photoSizes.get(photoSizes.index.smallest());
+        }
+        final int maxImages = _photoMaxImages;
+        _outputPlanTrimmed = false;
+
+        // reuse image reader if it's compatible
+        if (_cameraPhotoReader != null && photoSize.equals(_cameraPhotoSize)
+            && _cameraPhotoReader.getMaxImages() == maxImages) {
+            TraceLog.record(TraceEvent.PHOTO_OUTPUT, photoSize.getWidth(),
+                photoSize.getHeight());
+        }
+
+        // or create image reader for capturing images
+        else {
+
+            // release existing reader
+            if (_cameraPhotoReader != null) {
+                _cameraPhotoReader.close();
+            }
+
+            // create new reader
+            _cameraPhotoSize = photoSize;
+            _cameraPhotoReader = ImageReader.newInstance(
+                _cameraPhotoSize.getWidth(), _cameraPhotoSize.getHeight(),
+                ImageFormat.JPEG, maxImages);
+            _cameraPhotoReader.setOnImageAvailableListener(
+                new ImageProcessor(), _captureHandler);
+        }
+
+        // choose embedded thumbnail size (used for progressive photos)
+        _cameraThumbnailSize = chooseThumbnailSize(
+            _cameraCharacteristics.get(
+                CameraCharacteristics.JPEG_AVAILABLE_THUMBNAIL_SIZES),
             _cameraPhotoSize);
 
+        // determine camera orientation
+        _cameraOrientation = _cameraCharacteristics
+            .get(CameraCharacteristics.SENSOR_ORIENTATION);
+
+        // validate display rotation
+        final int displayRotation = _display.getRotation();
+        if (!CameraGeometry.isValidRotation(displayRotation)) {
+            Log.e(TAG, "display rotation is invalid: " + displayRotation);
+        }
+
+        Size previewSize = previewView.getSize();
+        TraceLog.record(TraceEvent.PREVIEW_OUTPUT, previewSize.getWidth(),
+            previewSize.getHeight());
+
+        // track inputs used for the output plan
+        _outputPlanRotation = displayRotation;
+        _outputPlanWidth = previewSize.getWidth();
+        _outputPlanHeight = previewSize.getHeight();
+
+        // determine preview dimension constraints (flips axis to match camera)
+        Point displaySize = new Point();
+        _display.getSize(displaySize);
+        PreviewConstraints constraints = CameraGeometry.getPreviewConstraints(
+            previewSize.getWidth(), previewSize.getHeight(),
+            displaySize.x, displaySize.y, displayRotation, _cameraOrientation,
+            MAX_PREVIEW_WIDTH, MAX_PREVIEW_HEIGHT);
+
+        // determine the best preview size
+        OutputSizes previewSizes = _cameraDescriptor.getPreviewSizes(
+            previewView.getSurfaceClass());
+        _cameraPreviewSize = previewSizes.get(previewSizes.index.chooseOptimalSize(
+            constraints.minWidth, constraints.minHeight,
+            constraints.maxWidth, constraints.maxHeight,
+            _cameraPhotoSize.getWidth(), _cameraPhotoSize.getHeight()));
+
+        // otherwise, just pick any size (not ideal)
+        if (_cameraPreviewSize == null) {
+            Log.w(TAG, "couldn't find any suitable preview size");
+            _cameraPreviewSize = previewSizes.sizes[0];
+        }
+
+        // drop snapshot stream if snapshots are disabled
+        if (!_snapshotsEnabled) {
+            if (_snapshotReader != null) {
+                retireSnapshotReader(_snapshotReader);
+                _snapshotReader = null;
+                _snapshotSize = null;
+            }
+        }
+
+        // or plan it alongside the preview
+        else {
+
+            // determine snapshot size (largest YUV frame within the preview size)
+            OutputSizes snapshotSizes = _cameraDescriptor.snapshotSizes;
+            Size snapshotSize = snapshotSizes.get(snapshotSizes.index.largestAtMost(
+                _cameraPreviewSize.getWidth(), _cameraPreviewSize.getHeight(),
+                _cameraPreviewSize.getWidth(), _cameraPreviewSize.getHeight()));
+            if (snapshotSize == null) {
+                snapshotSize = snapshotSizes.get(snapshotSizes.index.smallest());
+            }
+
+            // reuse snapshot reader if it's compatible
+            if (_snapshotReader != null && snapshotSize.equals(_snapshotSize)) {
+                TraceLog.record(TraceEvent.SNAPSHOT_OUTPUT, snapshotSize.getWidth(),
+                    snapshotSize.getHeight());
+            }
+
+            // or create image reader for preview snapshots
+            else {
+
+                // release existing reader
+                if (_snapshotReader != null) {
+                    retireSnapshotReader(_snapshotReader);
+                }
+
+                // create new reader (holds the latest frame, one being converted
+                // and one being acquired)
+                _snapshotSize = snapshotSize;
+                _snapshotReader = ImageReader.newInstance(
+                    _snapshotSize.getWidth(), _snapshotSize.getHeight(),
+                    ImageFormat.YUV_420_888, SNAPSHOT_MAX_IMAGES);
+                _snapshotReader.setOnImageAvailableListener(
+                    new SnapshotProcessor(), _captureHandler);
+            }
+        }
+
+        // apply preview aspect ratio (on the main thread; buffers are sized
+        // before the session is bound)
+        applyPreviewSize(previewView, _cameraPreviewSize);
+    }
+
+    private void applyPreviewSize(PreviewBackend previewView, Size previewSize) {
+
+        // marshal view updates to the main thread
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            _activity.runOnUiThread(() -> applyPreviewSize(previewView, previewSize));
+            return;
+        }
+
         // adjust preview aspect ratio to match image output
         int orientation = _activity.getResources()
             .getConfiguration().orientation;
         if (orientation == Configuration.ORIENTATION_LANDSCAPE) {
-            previewView.setAspectRatio(_cameraPreviewSize.getWidth(),
-                _cameraPreviewSize.getHeight());
+            previewView.setAspectRatio(previewSize.getWidth(),
+                previewSize.getHeight());
         }
         else {
-            previewView.setAspectRatio(_cameraPreviewSize.getHeight(),
-                _cameraPreviewSize.getWidth());
+            previewView.setAspectRatio(previewSize.getHeight(),
+                previewSize.getWidth());
+        }
+    }
+
+    private void bindOutputsWhenSized(PreviewBackend previewView,
+                                      CameraDevice camera) {
+
+        // size preview buffers (the session would otherwise use stale sizes)
+        final Size previewSize = _cameraPreviewSize;
+        _previewSizing = previewView
+            .applyBufferSize(previewSize.getWidth(), previewSize.getHeight())
+            .timeout(PREVIEW_SIZING_TIMEOUT, TimeUnit.MILLISECONDS, _cameraScheduler)
+            .doOnError(e -> Log.w(TAG, "preview buffers weren't sized to "
+                + previewSize + ": " + e))
+            .onErrorComplete()
+            .observeOn(_cameraScheduler)
+            .subscribe(() -> {
+
+                // skip if camera was closed (or switched) in the meantime
+                _previewSizing = null;
+                if (_camera != camera) {
+                    return;
+                }
+
+                // prepare outputs
+                try {
+                    bindOutputs(previewView);
+                }
+
+                // or raise exception (stops feed)
+                catch (CameraAccessException e) {
+                    setState(new DeviceAccessException(
+                        "Failed to bind camera feed to outputs: " + e.getMessage()));
+                }
+            });
+    }
+
+    private void bindOutputs(PreviewBackend previewView)
+        throws CameraAccessException {
+
+        // bind session inside a trace section
+        TraceLog.begin(TraceEvent.BIND_OUTPUTS);
+        try {
+            bindSession(previewView);
+        }
+        finally {
+            TraceLog.end();
         }
     }
 
-    private void bindOutputs(AspectTextureView previewView)
+    private void bindSession(PreviewBackend previewView)
         throws CameraAccessException {
 
-        // initialize preview texture to create surface
-        SurfaceTexture previewTexture = previewView.getSurfaceTexture();
-        assert previewTexture != null;
-        previewTexture.setDefaultBufferSize(_cameraPreviewSize.getWidth(),
-            _cameraPreviewSize.getHeight());
-        Surface previewSurface = new Surface(previewTexture);
+        // resolve preview surface (owned and reused by the preview backend)
+        Surface previewSurface = previewView.getPreviewSurface();
+        assert previewSurface != null;
 
-        // create a reusable request builder
-        _cameraRequestBuilder
-            = _camera.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+        // drop stale target from the reused request builder
+        if (_previewSurface != null && _previewSurface != previewSurface
+            && _cameraRequestBuilder != null) {
+            _cameraRequestBuilder.removeTarget(_previewSurface);
+        }
+        _previewSurface = previewSurface;
+
+        // swap snapshot target too (its reader is replaced when the size changes
+        // and dropped when snapshots are disabled)
+        Surface snapshotSurface = _snapshotReader != null
+            ? _snapshotReader.getSurface()
+            : null;
+        if (_snapshotSurface != null && _snapshotSurface != snapshotSurface
+            && _cameraRequestBuilder != null) {
+            _cameraRequestBuilder.removeTarget(_snapshotSurface);
+        }
+        _snapshotSurface = snapshotSurface;
+
+        // create a reusable request builder (kept while the camera is unchanged)
+        if (_cameraRequestBuilder == null
+            || !_camera.getId().equals(_cameraRequestCameraId)) {
+            _cameraRequestBuilder
+                = _camera.createCaptureRequest(CameraDevice.TEMPLATE_PREVIEW);
+            _cameraRequestCameraId = _camera.getId();
+        }
         _cameraRequestBuilder.addTarget(previewSurface);
 
+        // clear one-shot triggers left behind by an aborted photo
+        _cameraRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
+            CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
+        _cameraRequestBuilder.set(CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER,
+            CameraMetadata.CONTROL_AE_PRECAPTURE_TRIGGER_IDLE);
+
+        // resolve session outputs (snapshot frames stream with the preview)
+        List<Surface> outputs = new ArrayList<>(3);
+        outputs.add(previewSurface);
+        outputs.add(_cameraPhotoReader.getSurface());
+        if (snapshotSurface != null) {
+            _cameraRequestBuilder.addTarget(snapshotSurface);
+            outputs.add(snapshotSurface);
+        }
+
         // start the capture session
-        _camera.createCaptureSession(
-            Arrays.asList(previewSurface, _cameraPhotoReader.getSurface()),
+        _camera.createCaptureSession(outputs,
             new CameraCaptureSession.StateCallback() {
 
                 @Override
                 public void onConfigured(@NonNull CameraCaptureSession session) {
 
                     // TODO: make sure we clear this when disposed
-                    // abort if camera is feed is already disposed
-                    if (_camera == null) {
+                    // abort if camera is feed is already disposed (or switched)
+                    if (_camera == null || session.getDevice() != _camera) {
                         return;
                     }
 
                     // track session
+                    TraceLog.record(TraceEvent.SESSION_CONFIGURED);
                     _cameraSession = session;
 
                     // configure session
@@ -653,61 +1584,201 @@ public class CameraFeed {
         }
     }
 
-    private static Size chooseOptimalPreviewSize(Size[] choices,
-                                                 int textureViewWidth, int textureViewHeight,
-                                                 int maxWidth, int maxHeight, Size aspectRatio) {
+    private static Size chooseThumbnailSize(Size[] choices, Size aspectRatio) {
 
-        // determine the sizes that can be used
-        List<Size> bigEnough = new ArrayList<>();
-        List<Size> notBigEnough = new ArrayList<>();
-        int w = aspectRatio.getWidth();
-        int h = aspectRatio.getHeight();
+        // skip if thumbnails aren't supported
+        if (choices == null) {
+            return null;
+        }
+
+        // use the largest thumbnail, preferring ones matching the aspect ratio
+        Size thumbnailSize = null;
+        boolean matchesAspect = false;
+        SizeComparator comparator = new SizeComparator();
         for (Size option : choices) {
 
-            // process sizes that aren't too large and match the aspect ratio
-            final int width = option.getWidth();
-            final int height = option.getHeight();
-            if (width <= maxWidth
-                && height <= maxHeight
-                && height == width * h / w) {
-
-                // track sizes are at least the size of the texture
-                if (width >= textureViewWidth &&
-                    height >= textureViewHeight) {
-                    bigEnough.add(option);
-                }
+            // skip "no thumbnail" option
+            if (option.getWidth() == 0 || option.getHeight() == 0) {
+                continue;
+            }
 
-                // or keep the other options
-                else {
-                    notBigEnough.add(option);
-                }
+            // track best option
+            boolean optionMatchesAspect = (long) option.getWidth() * aspectRatio.getHeight()
+                == (long) option.getHeight() * aspectRatio.getWidth();
+            if (thumbnailSize == null
+                || (optionMatchesAspect && !matchesAspect)
+                || (optionMatchesAspect == matchesAspect
+                    && comparator.compare(option, thumbnailSize) > 0)) {
+                thumbnailSize = option;
+                matchesAspect = optionMatchesAspect;
             }
         }
 
-        // use the smallest of the "large enough" sizes
-        if (bigEnough.size() > 0) {
-            return Collections.min(bigEnough, new SizeComparator());
+        // return size
+        return thumbnailSize;
+    }
+
+
+    private final class CameraScheduler extends Scheduler {
+
+        @NonNull
+        @Override
+        public Worker createWorker() {
+
+            // run on the capture thread (or in place while the feed is stopped)
+            final Scheduler scheduler = _captureScheduler;
+            return scheduler != null
+                ? scheduler.createWorker()
+                : Schedulers.trampoline().createWorker();
         }
+    }
 
-        // or use the largest of the "not large enough" sizes
-        else if (notBigEnough.size() > 0) {
-            return Collections.max(notBigEnough, new SizeComparator());
+    private class PhotoOutputMemory implements MemoryConsumer {
+
+        @Override
+        public String getName() {
+            return "CameraFeed photo output";
         }
 
-        // otherwise, just pick any size (not ideal)
-        else {
-            Log.w(TAG, "couldn't find any suitable preview size");
-            return choices[0];
+        @Override
+        public long getAllocatedBytes() {
+
+            // estimate JPEG buffers (about one byte per pixel each)
+            final ImageReader reader = _cameraPhotoReader;
+            final Size photoSize = _cameraPhotoSize;
+            final long photoBytes = reader == null || photoSize == null
+                ? 0
+                : (long) photoSize.getWidth() * photoSize.getHeight()
+                    * reader.getMaxImages();
+
+            // and YUV snapshot buffers (1.5 bytes per pixel each)
+            final ImageReader snapshotReader = _snapshotReader;
+            final Size snapshotSize = _snapshotSize;
+            final long snapshotBytes = snapshotReader == null || snapshotSize == null
+                ? 0
+                : (long) snapshotSize.getWidth() * snapshotSize.getHeight() * 3 / 2
+                    * snapshotReader.getMaxImages();
+            return photoBytes + snapshotBytes;
+        }
+
+        @Override
+        public void trimMemory(int level) {
+
+            // only react to pressure while running (UI_HIDDEN / BACKGROUND are
+            // routine, and the view stops the feed when it's hidden)
+            if (level != ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                && level != ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL
+                && level != ComponentCallbacks2.TRIM_MEMORY_COMPLETE) {
+                return;
+            }
+
+            // single-buffer photos (applied when outputs are next prepared)
+            _photoMaxImages = 1;
+
+            // and cap photo size to half the largest under heavy pressure
+            final Size photoSize = _cameraPhotoSize;
+            if (level != ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW
+                && photoSize != null && _photoMaxArea == Long.MAX_VALUE) {
+                _photoMaxArea = (long) photoSize.getWidth() * photoSize.getHeight() / 2;
+            }
+
+            Log.d(TAG, "reducing photo output (max images " + _photoMaxImages
+                + ", max area " + _photoMaxArea + ")");
+
+            // force outputs to be prepared again on resume
+            _outputPlanTrimmed = true;
         }
     }
 
+    private static final class CameraDescriptor {
+
+        final String id;
+        final CameraCharacteristics characteristics;
+        final StreamConfigurationMap configurationMap;
+        final boolean canFlash;
+        final int maxFrameRate;
+        final OutputSizes photoSizes;
+        final OutputSizes snapshotSizes;
+        private final Map<Class<?>, OutputSizes> _previewSizes;
+
+
+        CameraDescriptor(String id, CameraCharacteristics characteristics,
+                         StreamConfigurationMap configurationMap, boolean canFlash) {
+            this.id = id;
+            this.characteristics = characteristics;
+            this.configurationMap = configurationMap;
+            this.canFlash = canFlash;
+            this.maxFrameRate = getMaxFrameRate(characteristics);
+            this.photoSizes = new OutputSizes(
+                configurationMap.getOutputSizes(ImageFormat.JPEG));
+            this.snapshotSizes = new OutputSizes(
+                configurationMap.getOutputSizes(ImageFormat.YUV_420_888));
+            _previewSizes = new HashMap<>();
+        }
+
+        private static int getMaxFrameRate(CameraCharacteristics characteristics) {
+
+            // use fastest advertised AE target (or a 60 fps default)
+            Range<Integer>[] ranges = characteristics.get(
+                CameraCharacteristics.CONTROL_AE_AVAILABLE_TARGET_FPS_RANGES);
+            int maxFrameRate = 0;
+            if (ranges != null) {
+                for (Range<Integer> range : ranges) {
+                    maxFrameRate = Math.max(maxFrameRate, range.getUpper());
+                }
+            }
+            return maxFrameRate > 0
+                ? maxFrameRate
+                : CaptureMetadataTable.DEFAULT_MAX_FRAME_RATE;
+        }
+
+        synchronized OutputSizes getPreviewSizes(Class<?> surfaceClass) {
+
+            // index preview sizes once per surface class
+            OutputSizes sizes = _previewSizes.get(surfaceClass);
+            if (sizes == null) {
+                sizes = new OutputSizes(configurationMap.getOutputSizes(surfaceClass));
+                _previewSizes.put(surfaceClass, sizes);
+            }
+            return sizes;
+        }
+    }
+
+    private static final class OutputSizes {
+
+        final Size[] sizes;
+        final OutputSizeIndex index;
+
+
+        OutputSizes(Size[] sizes) {
+
+            // copy sizes to primitive arrays
+            final int[] widths = new int[sizes.length];
+            final int[] heights = new int[sizes.length];
+            for (int i = 0; i < sizes.length; ++i) {
+                widths[i] = sizes[i].getWidth();
+                heights[i] = sizes[i].getHeight();
+            }
+
+            // build index
+            this.sizes = sizes;
+            this.index = new OutputSizeIndex(widths, heights);
+        }
+
+        Size get(int index) {
+            return index < 0
+                ? null
+                : sizes[index];
+        }
+    }
 
     private class CameraObserver extends CameraDevice.StateCallback {
 
-        private final AspectTextureView _previewView;
+        private final PreviewBackend _previewView;
+        private boolean _opened;
 
 
-        public CameraObserver(AspectTextureView previewView) {
+        public CameraObserver(PreviewBackend previewView) {
             _previewView = previewView;
         }
 
@@ -715,41 +1786,43 @@ public class CameraFeed {
         public void onOpened(@NonNull CameraDevice camera) {
 
             Log.d(TAG, "Connected to camera " + camera.getId());
+            TraceLog.record(TraceEvent.CAMERA_OPENED, camera.getId().hashCode());
 
             // capture camera
             _camera = camera;
+            _opened = true;
 
             // release lock
             _cameraBindingLock.release();
 
-            // update state
+            // update state (stamped here so late subscribers see the real latency)
+            _cameraConnectTime = SystemClock.elapsedRealtime();
             setState(State.CONNECTED);
-
-            Log.v(TAG, "preparing camera outputs");
-
-            // prepare outputs
-            try {
-                bindOutputs(_previewView);
-            }
-
-            // or raise exception (stops feed)
-            catch (CameraAccessException e) {
-                setState(new DeviceAccessException(
-                    "Failed to bind camera feed to outputs: " + e.getMessage()));
-            }
+
+            // prepare outputs once preview buffers match the camera output
+            bindOutputsWhenSized(_previewView, camera);
         }
 
         @Override
         public void onDisconnected(@NonNull CameraDevice camera) {
 
             Log.d(TAG, "Disconnected from camera " + camera.getId());
+            TraceLog.record(TraceEvent.CAMERA_DISCONNECTED,
+                camera.getId().hashCode());
 
             // dispose of camera
-            _camera.close();
-            _camera = null;
+            camera.close();
 
-            // release lock
-            _cameraBindingLock.release();
+            // release lock if it's still held for opening
+            if (!_opened) {
+                _cameraBindingLock.release();
+            }
+
+            // ignore if the camera was already replaced (i.e. switched)
+            if (_opened && _camera != camera) {
+                return;
+            }
+            _camera = null;
 
             // update state
             setState(State.DISCONNECTED);
@@ -760,15 +1833,23 @@ public class CameraFeed {
         @Override
         public void onError(@NonNull CameraDevice camera, int error) {
 
-            Log.d(TAG,
-                "Error from camera " + camera.getId() + " code " + error);
+            Log.e(TAG, "Error from camera " + camera.getId() + " code " + error);
+            TraceLog.record(TraceEvent.CAMERA_ERROR, camera.getId().hashCode(),
+                error);
 
             // dispose of camera
-            _camera.close();
-            _camera = null;
+            camera.close();
 
-            // release lock
-            _cameraBindingLock.release();
+            // release lock if it's still held for opening
+            if (!_opened) {
+                _cameraBindingLock.release();
+            }
+
+            // ignore if the camera was already replaced (i.e. switched)
+            if (_opened && _camera != camera) {
+                return;
+            }
+            _camera = null;
 
             // raise exception (stops feed)
             setState(new DeviceAccessException(
@@ -779,6 +1860,36 @@ public class CameraFeed {
     private class PhotoPrecaptureCallback
         extends CameraCaptureSession.CaptureCallback {
 
+        private final Runnable _deadline = this::onDeadline;
+        private long _captureStartTime;
+        private long _phaseStartTime;
+        private long _focusDuration;
+        private long _precaptureStartDuration;
+        private long _precaptureDuration;
+        private CaptureReport.Phase _timedOutPhase;
+
+
+        void begin() {
+
+            // reset timing
+            _captureStartTime = _phaseStartTime = SystemClock.elapsedRealtime();
+            _focusDuration = _precaptureStartDuration = _precaptureDuration = 0;
+            _timedOutPhase = null;
+
+            // start focusing
+            _captureState = StillCaptureSequence.State.FOCUSING;
+            scheduleDeadline();
+        }
+
+        void cancel() {
+
+            // stop waiting on 3A
+            _captureState = StillCaptureSequence.State.IDLE;
+            if (_captureHandler != null) {
+                _captureHandler.removeCallbacks(_deadline);
+            }
+        }
+
         @Override
         public void onCaptureProgressed(@NonNull CameraCaptureSession session,
                                         @NonNull CaptureRequest request,
@@ -794,59 +1905,122 @@ public class CameraFeed {
         }
 
         private void process(CaptureResult result) {
-            switch (_captureState) {
-                case IDLE:
-                    break;
-
-                case FOCUSING:
 
-                    // take picture if auto-focus is not present
-                    Integer focusState = result.get(CaptureResult.CONTROL_AF_STATE);
-                    if (focusState == null) {
-                        capture();
-                    }
+            // resolve next step of the 3A sequence (shared with CapturePipeline)
+            StillCaptureSequence.State next = StillCaptureSequence.next(
+                _captureState,
+                getState(result, CaptureResult.CONTROL_AF_STATE),
+                getState(result, CaptureResult.CONTROL_AE_STATE));
+            if (next == _captureState) {
+                return;
+            }
 
-                    // or handle case where focus is complete
-                    else if (focusState == CaptureResult.CONTROL_AF_STATE_FOCUSED_LOCKED
-                        || focusState == CaptureResult.CONTROL_AF_STATE_NOT_FOCUSED_LOCKED) {
-
-                        // take picture if auto-exposure is complete (or not available)
-                        Integer exposureState = result.get(CaptureResult.CONTROL_AE_STATE);
-                        if (exposureState == null
-                            || exposureState == CaptureResult.CONTROL_AE_STATE_CONVERGED) {
-                            capture();
-                        }
-
-                        // or start auto-exposure
-                        else {
-                            initializeCapture();
-                        }
-                    }
+            // start auto-exposure, wait for it, or take the picture
+            switch (next) {
+                case CAPTURE_INIT:
+                    initializeCapture();
                     break;
 
-                case CAPTURE_INIT: {
+                case CAPTURING:
+                    setPhase(StillCaptureSequence.State.CAPTURING);
+                    break;
 
-                    // move to capturing if exposure is ready
-                    Integer exposureState = result
-                        .get(CaptureResult.CONTROL_AE_STATE);
-                    if (exposureState == null
-                        || exposureState == CaptureResult.CONTROL_AE_STATE_PRECAPTURE
-                        || exposureState == CaptureRequest.CONTROL_AE_STATE_FLASH_REQUIRED) {
-                        _captureState = PhotoCaptureState.CAPTURING;
-                    }
+                case CAPTURED:
+                    capture();
                     break;
-                }
+            }
+        }
 
-                case CAPTURING:
+        private int getState(CaptureResult result, CaptureResult.Key<Integer> key) {
+            Integer value = result.get(key);
+            return value == null ? StillCaptureSequence.STATE_UNKNOWN : value;
+        }
 
-                    // move to captured if exposure is complete
-                    Integer exposureState = result.get(CaptureResult.CONTROL_AE_STATE);
-                    if (exposureState == null
-                        || exposureState != CaptureResult.CONTROL_AE_STATE_PRECAPTURE) {
-                        capture();
-                    }
+        private void setPhase(StillCaptureSequence.State captureState) {
+
+            // record time spent in current phase
+            final long now = SystemClock.elapsedRealtime();
+            final long duration = now - _phaseStartTime;
+            switch (_captureState) {
+                case FOCUSING:
+                    _focusDuration = duration;
+                    break;
+                case CAPTURE_INIT:
+                    _precaptureStartDuration = duration;
+                    break;
+                case CAPTURING:
+                    _precaptureDuration = duration;
                     break;
             }
+
+            // move to next phase
+            _phaseStartTime = now;
+            _captureState = captureState;
+            scheduleDeadline();
+        }
+
+        private void scheduleDeadline() {
+
+            // clear existing deadline
+            _captureHandler.removeCallbacks(_deadline);
+
+            // skip if capture isn't waiting on 3A
+            CaptureReport.Phase phase = getPhase(_captureState);
+            if (phase == null) {
+                return;
+            }
+
+            // determine earliest deadline (0 means unbounded)
+            final CaptureBudget budget = _captureBudget;
+            long timeout = budget.getTimeout(phase);
+            if (budget.getTotalTimeout() > 0) {
+                long remaining = budget.getTotalTimeout()
+                    - (SystemClock.elapsedRealtime() - _captureStartTime);
+                timeout = timeout > 0
+                    ? Math.min(timeout, remaining)
+                    : remaining;
+            }
+
+            // schedule deadline
+            if (timeout > 0 || budget.getTotalTimeout() > 0) {
+                _captureHandler.postDelayed(_deadline, Math.max(0, timeout));
+            }
+        }
+
+        private void onDeadline() {
+
+            // ignore if capture isn't waiting on 3A
+            CaptureReport.Phase phase = getPhase(_captureState);
+            if (phase == null) {
+                return;
+            }
+
+            // determine which budget was exhausted
+            final CaptureBudget budget = _captureBudget;
+            final long elapsed = SystemClock.elapsedRealtime() - _captureStartTime;
+            _timedOutPhase = budget.getTotalTimeout() > 0
+                && elapsed >= budget.getTotalTimeout()
+                ? CaptureReport.Phase.TOTAL
+                : phase;
+
+            Log.w(TAG, "capture budget exhausted in " + _timedOutPhase
+                + ", capturing with current 3A state");
+
+            // capture using current 3A values
+            capture();
+        }
+
+        private CaptureReport.Phase getPhase(StillCaptureSequence.State captureState) {
+            switch (captureState) {
+                case FOCUSING:
+                    return CaptureReport.Phase.FOCUS;
+                case CAPTURE_INIT:
+                    return CaptureReport.Phase.PRECAPTURE_START;
+                case CAPTURING:
+                    return CaptureReport.Phase.PRECAPTURE;
+                default:
+                    return null;
+            }
         }
 
         private void initializeCapture() {
@@ -859,7 +2033,7 @@ public class CameraFeed {
                     CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER_START);
 
                 // update session
-                _captureState = PhotoCaptureState.CAPTURE_INIT;
+                setPhase(StillCaptureSequence.State.CAPTURE_INIT);
                 _cameraSession.capture(_cameraRequestBuilder.build(),
                     this, _captureHandler);
             }
@@ -873,7 +2047,16 @@ public class CameraFeed {
         private void capture() {
 
             // ensure maked as captured
-            _captureState = PhotoCaptureState.CAPTURED;
+            setPhase(StillCaptureSequence.State.CAPTURED);
+
+            // report shutter latency
+            CaptureReport report = new CaptureReport(_focusDuration,
+                _precaptureStartDuration, _precaptureDuration,
+                SystemClock.elapsedRealtime() - _captureStartTime,
+                _timedOutPhase);
+            TraceLog.record(TraceEvent.PHOTO_CAPTURE, (int) report.getTotalDuration(),
+                _timedOutPhase == null ? -1 : _timedOutPhase.ordinal());
+            _captureReport$.onNext(report);
 
             // initiate a photo
             try {
@@ -889,17 +2072,24 @@ public class CameraFeed {
                 configureCameraRequest(captureBuilder);
 
                 // set image orientation
-                int rotation = _display.getRotation();
-                _photoOrientation = (ORIENTATIONS.get(rotation)
-                    + _cameraOrientation + 270) % 360;
+                _photoOrientation = CameraGeometry.getJpegOrientation(
+                    _display.getRotation(), _cameraOrientation);
+                final PhotoRequest request = _photoRequest;
                 captureBuilder.set(CaptureRequest.JPEG_ORIENTATION,
                     _photoOrientation);
+                if (request != null) {
+                    request.configureCapture(captureBuilder);
+                }
 
-                // update session
-                _cameraSession.stopRepeating();
-                _cameraSession.abortCaptures();
+                // stop preview if the still needs the camera to itself
+                if (_captureMode == CaptureMode.PAUSE_PREVIEW) {
+                    _cameraSession.stopRepeating();
+                    _cameraSession.abortCaptures();
+                }
+
+                // submit still (alongside the preview loop when it's kept)
                 _cameraSession.capture(captureBuilder.build(),
-                    _photoCaptureCallback,null);
+                    _photoCaptureCallback, _captureHandler);
             }
 
             // handle exceptions
@@ -918,20 +2108,45 @@ public class CameraFeed {
             @NonNull CaptureRequest request,
             @NonNull TotalCaptureResult result) {
 
+            // record metadata and deliver photo if its image arrived first
+            _captureMetadata.put(result);
+            CaptureMetadata metadata = CaptureMetadata.from(result);
+            Image image = _pendingPhotoImage;
+            if (image != null && _pendingPhotoTimestamp == metadata.getTimestamp()) {
+                _pendingPhotoImage = null;
+                deliverImage(image, metadata);
+            }
+
             // reset to preview state
             try {
 
-                // unlock focus immediately
+                // build focus unlock (clearing the precapture trigger)
                 _cameraRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
                     CameraMetadata.CONTROL_AF_TRIGGER_CANCEL);
+                _cameraRequestBuilder.set(CaptureRequest.CONTROL_AE_PRECAPTURE_TRIGGER,
+                    CameraMetadata.CONTROL_AE_PRECAPTURE_TRIGGER_IDLE);
                 configureCameraRequest(_cameraRequestBuilder);
-                _cameraSession.capture(_cameraRequestBuilder.build(),
-                    _previewCaptureCallback, _captureHandler);
+                photoPrecaptureCallback.cancel();
+
+                // fold unlock into the running preview loop (the plain preview
+                // request is restored after its first result)
+                if (_captureMode == CaptureMode.KEEP_PREVIEW) {
+                    _cameraUnlockRequest = _cameraRequestBuilder.build();
+                    _cameraSession.setRepeatingRequest(_cameraUnlockRequest,
+                        _previewCaptureCallback, _captureHandler);
+                }
 
-                // reset to preview loop
-                _captureState = PhotoCaptureState.IDLE;
-                _cameraSession.setRepeatingRequest(_cameraPreviewRequest,
-                    _previewCaptureCallback, _captureHandler);
+                // or unlock focus immediately, then restart the preview loop
+                else {
+                    _cameraSession.capture(_cameraRequestBuilder.build(),
+                        _previewCaptureCallback, _captureHandler);
+                    _cameraSession.setRepeatingRequest(_cameraPreviewRequest,
+                        _previewCaptureCallback, _captureHandler);
+                }
+
+                // keep reused builder free of one-shot triggers
+                _cameraRequestBuilder.set(CaptureRequest.CONTROL_AF_TRIGGER,
+                    CameraMetadata.CONTROL_AF_TRIGGER_IDLE);
             }
 
             // handle exceptions
@@ -939,49 +2154,432 @@ public class CameraFeed {
                 e.printStackTrace();
             }
         }
+
+        @Override
+        public void onCaptureFailed(@NonNull CameraCaptureSession session,
+                                    @NonNull CaptureRequest request,
+                                    @NonNull CaptureFailure failure) {
+
+            // deliver waiting image without metadata
+            Image image = _pendingPhotoImage;
+            if (image != null) {
+                _pendingPhotoImage = null;
+                deliverImage(image, null);
+            }
+        }
     }
 
     private class PreviewCaptureCallback
         extends CameraCaptureSession.CaptureCallback {
+
+        @Override
+        public void onCaptureCompleted(@NonNull CameraCaptureSession session,
+                                       @NonNull CaptureRequest request,
+                                       @NonNull TotalCaptureResult result) {
+
+            // record metadata for frame correlation (copied into reused slots)
+            _captureMetadata.put(result);
+
+            // restore plain preview loop once focus unlock has been applied
+            if (request == _cameraUnlockRequest) {
+                _cameraUnlockRequest = null;
+                try {
+                    session.setRepeatingRequest(_cameraPreviewRequest,
+                        _previewCaptureCallback, _captureHandler);
+                }
+                catch (CameraAccessException e) {
+                    e.printStackTrace();
+                }
+            }
+
+            // keep precapture moving with repeating results (3A reports here too)
+            switch (_captureState) {
+                case FOCUSING:
+                case CAPTURE_INIT:
+                case CAPTURING:
+                    photoPrecaptureCallback.process(result);
+                    break;
+            }
+        }
     }
 
-    private class ImageProcessor
+    private abstract class PhotoRequest {
+
+        protected final long _requestTime;
+
+
+        PhotoRequest() {
+            _requestTime = SystemClock.elapsedRealtime();
+        }
+
+        void configureCapture(CaptureRequest.Builder captureBuilder) {
+        }
+
+        abstract void onImage(Image image, CaptureMetadata metadata)
+            throws Exception;
+
+        abstract void onError(Throwable error);
+
+        protected void release() {
+
+            // stop tracking request if it's still active
+            if (_photoRequest == this) {
+                _photoRequest = null;
+            }
+        }
+    }
+
+    private class BitmapPhotoRequest extends PhotoRequest {
+
+        private final SingleEmitter<Photo> _emitter;
+
+
+        BitmapPhotoRequest(SingleEmitter<Photo> emitter) {
+            _emitter = emitter;
+            _emitter.setDisposable(Disposables.fromAction(this::release));
+        }
+
+        @Override
+        void onImage(Image image, CaptureMetadata metadata) {
+
+            // convert image to bitmap
+            Bitmap bitmap = ImageHelper.createBitmap(image);
+
+            // rotate bitmap if required
+            bitmap = ImageHelper.rotateBitmap(bitmap, _photoOrientation);
+
+            // emit photo
+            _emitter.onSuccess(new Photo(bitmap, _photoOrientation, metadata));
+        }
+
+        @Override
+        void onError(Throwable error) {
+            _emitter.onError(error);
+        }
+    }
+
+    private class RegionPhotoRequest extends PhotoRequest {
+
+        private final SingleEmitter<Photo> _emitter;
+        private final float[] _region;
+        private final float[] _sensorRegion;
+        private final int[] _cropRegion;
+        private Rect _activeArray;
+
+
+        RegionPhotoRequest(SingleEmitter<Photo> emitter, float[] region) {
+            _emitter = emitter;
+            _emitter.setDisposable(Disposables.fromAction(this::release));
+            _region = region;
+            _sensorRegion = new float[4];
+            _cropRegion = new int[4];
+        }
+
+        @Override
+        void configureCapture(CaptureRequest.Builder captureBuilder) {
+
+            // keep sensor pixels as-is (region is mapped in sensor orientation)
+            captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, 0);
+            RegionGeometry.toSensorRegion(_region, _photoOrientation,
+                _sensorRegion);
+
+            // crop on the sensor (grown to photo aspect ratio and zoom limits)
+            _activeArray = _cameraCharacteristics.get(
+                CameraCharacteristics.SENSOR_INFO_ACTIVE_ARRAY_SIZE);
+            Float maxZoom = _cameraCharacteristics.get(
+                CameraCharacteristics.SCALER_AVAILABLE_MAX_DIGITAL_ZOOM);
+            RegionGeometry.getCropRegion(_sensorRegion,
+                _activeArray.width(), _activeArray.height(),
+                _cameraPhotoSize.getWidth(), _cameraPhotoSize.getHeight(),
+                maxZoom == null ? 1 : maxZoom, _cropRegion);
+            captureBuilder.set(CaptureRequest.SCALER_CROP_REGION, new Rect(
+                _activeArray.left + _cropRegion[0],
+                _activeArray.top + _cropRegion[1],
+                _activeArray.left + _cropRegion[2],
+                _activeArray.top + _cropRegion[3]));
+        }
+
+        @Override
+        void onImage(Image image, CaptureMetadata metadata) throws Exception {
+
+            // use crop actually applied by the camera (if reported)
+            Rect appliedCrop = metadata == null ? null : metadata.getCropRegion();
+            if (appliedCrop != null && !appliedCrop.isEmpty()) {
+                _cropRegion[0] = appliedCrop.left - _activeArray.left;
+                _cropRegion[1] = appliedCrop.top - _activeArray.top;
+                _cropRegion[2] = appliedCrop.right - _activeArray.left;
+                _cropRegion[3] = appliedCrop.bottom - _activeArray.top;
+            }
+
+            // map region into encoded image pixels
+            int[] imageRegion = new int[4];
+            RegionGeometry.mapToImage(_sensorRegion, _cropRegion,
+                _activeArray.width(), _activeArray.height(),
+                image.getWidth(), image.getHeight(), imageRegion);
+
+            // decode only the region and rotate it upright
+            Bitmap bitmap = ImageHelper.decodeRegion(ImageHelper.getData(image),
+                new Rect(imageRegion[0], imageRegion[1], imageRegion[2],
+                    imageRegion[3]), 1);
+            bitmap = ImageHelper.rotateBitmap(bitmap, _photoOrientation);
+
+            // emit photo
+            _emitter.onSuccess(new Photo(bitmap, _photoOrientation, metadata));
+        }
+
+        @Override
+        void onError(Throwable error) {
+            _emitter.onError(error);
+        }
+    }
+
+    private class TiledPhotoRequest extends PhotoRequest {
+
+        private final SingleEmitter<TiledPhoto> _emitter;
+
+
+        TiledPhotoRequest(SingleEmitter<TiledPhoto> emitter) {
+            _emitter = emitter;
+            _emitter.setDisposable(Disposables.fromAction(this::release));
+        }
+
+        @Override
+        void configureCapture(CaptureRequest.Builder captureBuilder) {
+
+            // keep sensor pixels as-is (tiles are rotated by the consumer)
+            captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, 0);
+        }
+
+        @Override
+        void onImage(Image image, CaptureMetadata metadata) throws Exception {
+
+            // keep encoded data only (tiles are decoded on demand)
+            _emitter.onSuccess(new TiledPhoto(ImageHelper.getData(image),
+                _photoOrientation));
+        }
+
+        @Override
+        void onError(Throwable error) {
+            _emitter.onError(error);
+        }
+    }
+
+    private class FilePhotoRequest extends PhotoRequest {
+
+        private final SingleEmitter<PhotoFile> _emitter;
+        private final File _file;
+
+
+        FilePhotoRequest(SingleEmitter<PhotoFile> emitter, File file) {
+            _emitter = emitter;
+            _emitter.setDisposable(Disposables.fromAction(this::release));
+            _file = file;
+        }
+
+        @Override
+        void configureCapture(CaptureRequest.Builder captureBuilder) {
+
+            // keep sensor pixels as-is (orientation is written as EXIF)
+            captureBuilder.set(CaptureRequest.JPEG_ORIENTATION, 0);
+        }
+
+        @Override
+        void onImage(Image image, CaptureMetadata metadata) throws Exception {
+
+            // stream encoded image to disk, tagging orientation
+            final long writeTime = SystemClock.elapsedRealtime();
+            final long size = JpegHelper.writeJpeg(ImageHelper.getBuffer(image),
+                _file, _photoOrientation);
+            final long completeTime = SystemClock.elapsedRealtime();
+
+            // emit file
+            _emitter.onSuccess(new PhotoFile(_file, size,
+                image.getWidth(), image.getHeight(), _photoOrientation,
+                writeTime - _requestTime, completeTime - writeTime, metadata));
+        }
+
+        @Override
+        void onError(Throwable error) {
+            _emitter.onError(error);
+        }
+    }
+
+    private class ProgressivePhotoRequest extends PhotoRequest {
+
+        private final ObservableEmitter<PhotoStage> _emitter;
+
+
+        ProgressivePhotoRequest(ObservableEmitter<PhotoStage> emitter) {
+            _emitter = emitter;
+            _emitter.setDisposable(Disposables.fromAction(this::release));
+        }
+
+        @Override
+        void configureCapture(CaptureRequest.Builder captureBuilder) {
+
+            // ask encoder to embed a thumbnail
+            if (_cameraThumbnailSize != null) {
+                captureBuilder.set(CaptureRequest.JPEG_THUMBNAIL_SIZE,
+                    _cameraThumbnailSize);
+            }
+        }
+
+        @Override
+        void onImage(Image image, CaptureMetadata metadata) {
+
+            // read encoded data
+            final byte[] imageData = ImageHelper.getData(image);
+
+            // use embedded thumbnail, or fall back to a sub-sampled decode
+            Bitmap thumbnail = JpegHelper.getThumbnail(imageData);
+            if (thumbnail == null) {
+                int thumbnailSize = _cameraThumbnailSize == null
+                    ? DEFAULT_THUMBNAIL_SIZE
+                    : Math.max(_cameraThumbnailSize.getWidth(),
+                        _cameraThumbnailSize.getHeight());
+                thumbnail = ImageHelper.createBitmap(imageData,
+                    ImageHelper.getSampleSize(image.getWidth(),
+                        image.getHeight(), thumbnailSize));
+            }
+
+            // emit thumbnail immediately
+            if (thumbnail != null) {
+                _emitter.onNext(new PhotoStage(PhotoStage.Type.THUMBNAIL,
+                    ImageHelper.rotateBitmap(thumbnail, _photoOrientation),
+                    SystemClock.elapsedRealtime() - _requestTime));
+            }
+
+            // stop if the consumer is gone
+            if (_emitter.isDisposed()) {
+                return;
+            }
+
+            // decode full image
+            Bitmap bitmap = ImageHelper.rotateBitmap(
+                ImageHelper.createBitmap(imageData, 1), _photoOrientation);
+
+            // emit full image and complete
+            _emitter.onNext(new PhotoStage(PhotoStage.Type.FULL, bitmap,
+                SystemClock.elapsedRealtime() - _requestTime));
+            _emitter.onComplete();
+        }
+
+        @Override
+        void onError(Throwable error) {
+            _emitter.onError(error);
+        }
+    }
+
+    private void deliverImage(Image image, CaptureMetadata metadata) {
+
+        // capture active request
+        final PhotoRequest request = _photoRequest;
+
+        // process image
+        try (Image photoImage = image) {
+
+            // skip if the photo request was disposed
+            if (request == null) {
+                Log.w(TAG, "discarding image without photo request");
+                return;
+            }
+
+            // deliver image to request
+            TraceLog.begin(TraceEvent.PHOTO_DELIVER);
+            try {
+                request.onImage(photoImage, metadata);
+            }
+            finally {
+                TraceLog.end();
+            }
+            TraceLog.record(TraceEvent.PHOTO_DELIVER,
+                (int) (SystemClock.elapsedRealtime() - request._requestTime));
+        }
+        catch (Exception e) {
+            if (request != null) {
+                request.onError(e);
+            }
+        }
+    }
+
+    private class SnapshotRequest {
+
+        private final SingleEmitter<Photo> _emitter;
+        private final long _requestTime;
+
+
+        SnapshotRequest(SingleEmitter<Photo> emitter) {
+            _emitter = emitter;
+            _requestTime = SystemClock.elapsedRealtime();
+            _emitter.setDisposable(Disposables.fromAction(this::release));
+        }
+
+        void onPhoto(Photo photo) {
+            _emitter.onSuccess(photo);
+        }
+
+        void onError(Throwable error) {
+            _emitter.tryOnError(error);
+        }
+
+        private void release() {
+
+            // stop tracking request on the capture thread (it owns the queue)
+            _cameraScheduler.scheduleDirect(() -> _snapshotRequests.remove(this));
+        }
+    }
+
+    private class SnapshotProcessor
         implements ImageReader.OnImageAvailableListener {
 
         @Override
         public void onImageAvailable(ImageReader reader) {
 
-            // process image
-            try {
+            // acquire newest frame (older queued frames are dropped)
+            final Image image = reader.acquireLatestImage();
+            if (image == null) {
+                return;
+            }
 
-                // convert image to bitmap
-                Bitmap bitmap;
-                try (Image image = reader.acquireNextImage()) {
+            // keep it as the latest frame (one is held, so the stream never stalls)
+            releaseSnapshotImage();
+            _snapshotImage = image;
+            _snapshotImageReader = reader;
 
-                    Log.d(TAG, "received image: " + image);
+            // deliver to snapshots waiting for a frame
+            deliverSnapshots();
+        }
+    }
 
-                    // convert image to bitmap
-                    bitmap = ImageHelper.createBitmap(image);
-                }
+    private class ImageProcessor
+        implements ImageReader.OnImageAvailableListener {
 
-                // scale bitmap if required
-                if (_photoOrientation != 0) {
+        @Override
+        public void onImageAvailable(ImageReader reader) {
 
-                    // create transform matrix
-                    Matrix matrix = new Matrix();
-                    matrix.postRotate(_photoOrientation);
+            // acquire image
+            final Image image = reader.acquireNextImage();
+            if (image == null) {
+                return;
+            }
 
-                    // create transformed bitmap
-                    bitmap = Bitmap.createBitmap(bitmap, 0, 0,
-                        bitmap.getWidth(), bitmap.getHeight(), matrix, true);
-                }
+            TraceLog.record(TraceEvent.PHOTO_IMAGE, image.getWidth(),
+                image.getHeight());
 
-                // emit bitmap
-                _photoEmitter.onSuccess(bitmap);
+            // deliver image with its capture result if it's already known
+            final long timestamp = image.getTimestamp();
+            final CaptureMetadata metadata = _captureMetadata.get(timestamp);
+            if (metadata != null || _photoRequest == null) {
+                deliverImage(image, metadata);
+                return;
             }
-            catch (Exception e) {
-                _photoEmitter.onError(e);
+
+            // or wait for the capture result (replacing any stale image)
+            if (_pendingPhotoImage != null) {
+                _pendingPhotoImage.close();
             }
+            _pendingPhotoImage = image;
+            _pendingPhotoTimestamp = timestamp;
         }
     }
 }
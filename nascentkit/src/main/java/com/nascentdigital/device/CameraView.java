@@ -1,22 +1,34 @@
 package com.nascentdigital.device;
 
 import android.content.Context;
+import android.content.res.TypedArray;
 import android.graphics.Bitmap;
+import android.graphics.RectF;
+import android.os.Looper;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.util.Size;
+import android.view.View;
 import android.widget.FrameLayout;
 
+import com.nascentdigital.graphics.TiledPhoto;
+import com.nascentdigital.nascentkit.R;
+import com.nascentdigital.util.StateMachine;
+import com.nascentdigital.util.TraceEvent;
+import com.nascentdigital.util.TraceLog;
+import com.nascentdigital.widget.AspectSurfaceView;
 import com.nascentdigital.widget.AspectTextureView;
+import com.nascentdigital.widget.PreviewBackend;
+
+import java.io.File;
 
 import io.reactivex.Observable;
 import io.reactivex.Single;
 import io.reactivex.android.schedulers.AndroidSchedulers;
 import io.reactivex.disposables.CompositeDisposable;
-import io.reactivex.disposables.Disposable;
-import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
 
 
 public class CameraView extends FrameLayout {
@@ -26,24 +38,27 @@ public class CameraView extends FrameLayout {
         STARTED,
         STOPPING,
         STOPPED,
+        SUSPENDED,
         ERROR
     }
 
     private static final String TAG = "nascent/CameraView";
 
-    private final AspectTextureView _cameraPreview;
+    private final PreviewBackend _cameraPreview;
     private final CompositeDisposable _cameraPreviewSubscriptions;
     private CameraPosition _cameraPosition;
     private CameraFeed _cameraFeed;
-    private Disposable _cameraFeedSubscription;
+    private final CompositeDisposable _cameraFeedSubscriptions;
+    private final PublishSubject<CaptureReport> _captureReport$;
+    private CaptureBudget _captureBudget;
+    private CaptureMode _captureMode;
+    private boolean _snapshotsEnabled;
 
-    private final Object _stateLock;
-    private final BehaviorSubject<State> _state$;
-    private State _state;
+    private final StateMachine<State> _state;
 
 
     public CameraView(@NonNull Context context) {
-        this(context, null);
+        this(context, (AttributeSet) null);
     }
 
     public CameraView(@NonNull Context context, @Nullable AttributeSet attributes) {
@@ -51,51 +66,144 @@ public class CameraView extends FrameLayout {
     }
 
     public CameraView(@NonNull Context context, @Nullable AttributeSet attributes, int style) {
+        this(context, attributes, style, getPreviewBackendType(context, attributes, style));
+    }
+
+    public CameraView(@NonNull Context context, @NonNull PreviewBackend.Type previewBackend) {
+        this(context, null, 0, previewBackend);
+    }
+
+    private CameraView(@NonNull Context context, @Nullable AttributeSet attributes, int style,
+                       @NonNull PreviewBackend.Type previewBackend) {
 
         // call base constructor
         super(context, attributes, style);
 
-        Log.d(TAG, "creating camera view");
+        Log.d(TAG, "creating camera view (" + previewBackend + " preview)");
 
         // initialize instance variables
-        _cameraPreview = new AspectTextureView(context);
+        _cameraPreview = previewBackend == PreviewBackend.Type.SURFACE
+            ? new AspectSurfaceView(context)
+            : new AspectTextureView(context);
         _cameraPreviewSubscriptions = new CompositeDisposable();
-        _stateLock = new Object();
-        _state$ = BehaviorSubject.createDefault(_state = State.STOPPED);
+        _cameraFeedSubscriptions = new CompositeDisposable();
+        _captureReport$ = PublishSubject.create();
+        _captureBudget = CaptureBudget.DEFAULT;
+        _captureMode = CaptureMode.PAUSE_PREVIEW;
+        _state = new StateMachine<>("CameraView", State.class,
+            State.STOPPED, State.ERROR)
+            .allow(State.STOPPED, State.STARTING)
+            .allow(State.STARTING, State.STARTED, State.SUSPENDED,
+                State.STOPPING, State.STOPPED)
+            .allow(State.STARTED, State.STARTING, State.SUSPENDED,
+                State.STOPPING)
+            .allow(State.SUSPENDED, State.STARTING, State.STOPPING)
+            .allow(State.STOPPING, State.STOPPED)
+            .allow(State.ERROR, State.STARTING, State.STOPPING, State.STOPPED);
 
         // initialize subviews
-        _cameraPreview
+        View previewView = _cameraPreview.getView();
+        previewView
             .setLayoutParams(new LayoutParams(LayoutParams.MATCH_PARENT,
                 LayoutParams.MATCH_PARENT));
-        addView(_cameraPreview);
+        addView(previewView);
     }
 
-    public State getState() {
-        synchronized (_stateLock) {
-            return _state;
+    private static PreviewBackend.Type getPreviewBackendType(Context context,
+                                                             AttributeSet attributes,
+                                                             int style) {
+
+        // read preview backend attribute (defaults to texture)
+        TypedArray values = context.obtainStyledAttributes(attributes,
+            R.styleable.CameraView, style, 0);
+        try {
+            int index = values.getInt(R.styleable.CameraView_previewBackend, 0);
+            return PreviewBackend.Type.values()[index];
+        }
+        finally {
+            values.recycle();
         }
     }
 
+    public State getState() {
+        return _state.getState();
+    }
+
+    public Throwable getError() {
+        return _state.getError();
+    }
+
     private void setState(State state) {
-        synchronized (_stateLock) {
-            _state = state;
-            _state$.onNext(state);
+        verifyMainThread();
+        TraceLog.record(TraceEvent.VIEW_STATE, state.ordinal());
+        _state.transition(state);
+    }
+
+    private void setState(Throwable error) {
+        verifyMainThread();
+        TraceLog.record(TraceEvent.VIEW_STATE, State.ERROR.ordinal());
+        _state.fail(error);
+    }
+
+    // NOTE: all CameraView streams (state, capture reports, photos) emit on
+    // the main thread
+    public Observable<State> observeState() {
+        return _state.observe();
+    }
+
+    private static void verifyMainThread() {
+
+        // fail if state is updated off the main thread
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            throw new IllegalStateException(
+                "CameraView must be used from the main thread.");
         }
     }
 
-    private void setState(Exception error) {
-        synchronized (_stateLock) {
-            _state = State.ERROR;
-            _state$.onError(error);
+    public CaptureBudget getCaptureBudget() {
+        return _captureBudget;
+    }
+
+    public void setCaptureBudget(@NonNull CaptureBudget captureBudget) {
+
+        // capture budget (applied to active feed immediately)
+        _captureBudget = captureBudget;
+        if (_cameraFeed != null) {
+            _cameraFeed.setCaptureBudget(captureBudget);
         }
     }
 
-    public Observable<State> observeState() {
-        synchronized (_stateLock) {
-            return _state$.distinctUntilChanged();
+    public CaptureMode getCaptureMode() {
+        return _captureMode;
+    }
+
+    public void setCaptureMode(@NonNull CaptureMode captureMode) {
+
+        // capture mode (applied to the next photo)
+        _captureMode = captureMode;
+        if (_cameraFeed != null) {
+            _cameraFeed.setCaptureMode(captureMode);
+        }
+    }
+
+    public boolean isSnapshotsEnabled() {
+        return _snapshotsEnabled;
+    }
+
+    public void setSnapshotsEnabled(boolean snapshotsEnabled) {
+
+        // snapshot stream (applied when the feed next prepares outputs)
+        _snapshotsEnabled = snapshotsEnabled;
+        if (_cameraFeed != null) {
+            _cameraFeed.setSnapshotsEnabled(snapshotsEnabled);
         }
     }
 
+    public Observable<CaptureReport> observeCaptureReports() {
+        return _captureReport$;
+    }
+
+    // NOTE: returns null for the SurfaceView preview backend
     public Bitmap getPreviewBitmap() {
         Bitmap bitmap = _cameraPreview.getBitmap();
         return bitmap;
@@ -109,7 +217,86 @@ public class CameraView extends FrameLayout {
                 "CameraPhoto can not be taken until started."));
         }
         else {
-            return _cameraFeed.takePhoto();
+            return _cameraFeed.takePhoto()
+                .observeOn(AndroidSchedulers.mainThread());
+        }
+    }
+
+    public Single<Photo> capturePhoto() {
+
+        // fail if feed isn't active
+        if (_cameraFeed == null) {
+            return Single.error(new IllegalStateException(
+                "CameraPhoto can not be taken until started."));
+        }
+        else {
+            return _cameraFeed.capturePhoto()
+                .observeOn(AndroidSchedulers.mainThread());
+        }
+    }
+
+    public Single<Photo> capturePhoto(RectF region) {
+
+        // fail if feed isn't active
+        if (_cameraFeed == null) {
+            return Single.error(new IllegalStateException(
+                "CameraPhoto can not be taken until started."));
+        }
+        else {
+            return _cameraFeed.capturePhoto(region)
+                .observeOn(AndroidSchedulers.mainThread());
+        }
+    }
+
+    public Single<Photo> snapshot() {
+
+        // fail if feed isn't active
+        if (_cameraFeed == null) {
+            return Single.error(new IllegalStateException(
+                "CameraPhoto can not be taken until started."));
+        }
+        else {
+            return _cameraFeed.snapshot()
+                .observeOn(AndroidSchedulers.mainThread());
+        }
+    }
+
+    public Single<TiledPhoto> takeTiledPhoto() {
+
+        // fail if feed isn't active
+        if (_cameraFeed == null) {
+            return Single.error(new IllegalStateException(
+                "CameraPhoto can not be taken until started."));
+        }
+        else {
+            return _cameraFeed.takeTiledPhoto()
+                .observeOn(AndroidSchedulers.mainThread());
+        }
+    }
+
+    public Single<PhotoFile> takePhotoToFile(File file) {
+
+        // fail if feed isn't active
+        if (_cameraFeed == null) {
+            return Single.error(new IllegalStateException(
+                "CameraPhoto can not be taken until started."));
+        }
+        else {
+            return _cameraFeed.takePhotoToFile(file)
+                .observeOn(AndroidSchedulers.mainThread());
+        }
+    }
+
+    public Observable<PhotoStage> takePhotoProgressive() {
+
+        // fail if feed isn't active
+        if (_cameraFeed == null) {
+            return Observable.error(new IllegalStateException(
+                "CameraPhoto can not be taken until started."));
+        }
+        else {
+            return _cameraFeed.takePhotoProgressive()
+                .observeOn(AndroidSchedulers.mainThread());
         }
     }
 
@@ -139,6 +326,99 @@ public class CameraView extends FrameLayout {
         bindToFeed();
     }
 
+    public Single<Long> switchCamera(CameraPosition cameraPosition) {
+
+        // fail if feed isn't active
+        if (_cameraFeed == null) {
+            return Single.error(new IllegalStateException(
+                "Camera can not be switched until started."));
+        }
+
+        // skip if camera is already in use
+        if (cameraPosition == _cameraPosition) {
+            return Single.just(0L);
+        }
+
+        Log.d(TAG, "switching CameraView to " + cameraPosition);
+
+        // update state
+        setState(State.STARTING);
+
+        // capture camera position
+        _cameraPosition = cameraPosition;
+
+        // switch feed camera on the camera thread (keeps feed resources); runs
+        // whether or not the caller subscribes
+        Single<Long> switchCamera$ = _cameraFeed
+            .switchCamera(cameraPosition, _cameraPreview)
+            .observeOn(AndroidSchedulers.mainThread())
+            .doOnError(error -> {
+
+                // print stack
+                error.printStackTrace();
+
+                // update state
+                setState(error);
+            })
+            .cache();
+        _cameraFeedSubscriptions.add(
+            switchCamera$.subscribe(latency -> {}, error -> {}));
+        return switchCamera$;
+    }
+
+    public void suspend() {
+
+        // skip if there's no active feed
+        if (_cameraFeed == null) {
+            Log.d(TAG, "ignoring suspend() - not active");
+            return;
+        }
+
+        Log.d(TAG, "suspending CameraView");
+
+        // update state
+        setState(State.SUSPENDED);
+
+        // release camera device only on the camera thread (feed configuration
+        // is kept)
+        _cameraFeedSubscriptions.add(
+            _cameraFeed.suspend()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                    () -> {},
+                    error -> {
+
+                        // print stack
+                        error.printStackTrace();
+
+                        // update state
+                        setState(error);
+                    }));
+    }
+
+    public void resume() {
+
+        // skip if the feed isn't suspended
+        if (_cameraFeed == null || getState() != State.SUSPENDED) {
+            Log.d(TAG, "ignoring resume() - not suspended");
+            return;
+        }
+
+        Log.d(TAG, "resuming CameraView");
+
+        // update state
+        setState(State.STARTING);
+
+        // skip if the preview is ready
+        if (!_cameraPreview.isAvailable()) {
+            Log.d(TAG, "deferring resume() when preview isn't active");
+            return;
+        }
+
+        // resume camera feed
+        resumeFeed();
+    }
+
     public void stop() {
 
         // skip if there's no active feed
@@ -161,8 +441,7 @@ public class CameraView extends FrameLayout {
         Log.d(TAG, "unsubscribing from CameraFeed events");
 
         // clear subscriptions
-        _cameraFeedSubscription.dispose();
-        _cameraFeedSubscription = null;
+        _cameraFeedSubscriptions.clear();
 
         Log.d(TAG, "stopping CameraFeed");
 
@@ -191,7 +470,7 @@ public class CameraView extends FrameLayout {
     @Override
     protected void onAttachedToWindow() {
 
-        Log.d(TAG, "subscribing to preview TextureView events");
+        Log.d(TAG, "subscribing to preview backend events");
 
         // subscribe to camera preview events
         _cameraPreviewSubscriptions.addAll(
@@ -212,7 +491,7 @@ public class CameraView extends FrameLayout {
     @Override
     protected void onDetachedFromWindow() {
 
-        Log.d(TAG, "unsubscribing from preview TextureView events");
+        Log.d(TAG, "unsubscribing from preview backend events");
 
         // unsubscribe from camera preview events
         _cameraPreviewSubscriptions.clear();
@@ -228,41 +507,76 @@ public class CameraView extends FrameLayout {
         // create feed
         _cameraFeed = new CameraFeed(getContext());
 
+        // apply capture budget
+        _cameraFeed.setCaptureBudget(_captureBudget);
+        _cameraFeed.setCaptureMode(_captureMode);
+        _cameraFeed.setSnapshotsEnabled(_snapshotsEnabled);
+
         // monitor camera feed changes (ensure callbacks occur on UI thread)
-        _cameraFeedSubscription = _cameraFeed.observeState()
-            .subscribeOn(AndroidSchedulers.mainThread())
-            .subscribe(this::onCameraFeedChanged);
+        _cameraFeedSubscriptions.addAll(
+            _cameraFeed.observeState()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(this::onCameraFeedChanged),
+
+            // forward capture reports
+            _cameraFeed.observeCaptureReports()
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(_captureReport$::onNext)
+        );
 
-        // start feed
-        try {
+        // start feed (discovery and open run on the camera thread)
+        Log.d(TAG, "starting CameraFeed");
+        _cameraFeedSubscriptions.add(
+            _cameraFeed.startAsync(_cameraPosition, _cameraPreview)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                    () -> {},
+                    error -> {
+
+                        // print stack
+                        error.printStackTrace();
+
+                        // update state
+                        setState(error);
+                    }));
+    }
 
-            Log.d(TAG, "starting CameraFeed");
-            _cameraFeed.start(_cameraPosition, _cameraPreview);
-        }
+    private void resumeFeed() {
 
-        // handle error
-        catch (Exception e) {
+        // resume feed (output planning and open run on the camera thread)
+        Log.d(TAG, "resuming CameraFeed");
+        _cameraFeedSubscriptions.add(
+            _cameraFeed.resume(_cameraPreview)
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(
+                    () -> {},
+                    error -> {
 
-            // print stack
-            e.printStackTrace();
+                        // print stack
+                        error.printStackTrace();
 
-            // update state
-            setState(e);
-        }
+                        // update state
+                        setState(error);
+                    }));
     }
 
     private void onCameraPreviewAvailableChanged(Boolean available) {
 
-        Log.d(TAG, "camera preview available: " + available);
+        TraceLog.record(TraceEvent.PREVIEW_AVAILABLE, available ? 1 : 0);
 
         // ignore if not active
         if (getState() != State.STARTING) {
             return;
         }
 
-        // start if available
+        // start (or resume suspended feed) if available
         if (available) {
-            bindToFeed();
+            if (_cameraFeed == null) {
+                bindToFeed();
+            }
+            else {
+                resumeFeed();
+            }
         }
 
         // or handle case where camera preview is disposed, but feed is active
@@ -273,7 +587,7 @@ public class CameraView extends FrameLayout {
 
     private void onCameraPreviewSizeChanged(Size size) {
 
-        Log.d(TAG, "camera preview size changed: " + size);
+        TraceLog.record(TraceEvent.PREVIEW_SIZE, size.getWidth(), size.getHeight());
 
         // update preview transform if feed is active
         if (_cameraFeed != null) {
@@ -286,14 +600,24 @@ public class CameraView extends FrameLayout {
         // handle changes to camera feed state
         switch (state) {
 
-            // update state when connected
+            // update state when connected (unless suspended while connecting)
             case CONNECTED:
-                Log.d(TAG, "CameraFeed connected");
-                setState(State.STARTED);
+                if (getState() != State.SUSPENDED) {
+                    setState(State.STARTED);
+                }
+                break;
+
+            // propagate feed errors
+            case ERROR: {
+                CameraFeed cameraFeed = _cameraFeed;
+                if (cameraFeed != null) {
+                    Log.e(TAG, "CameraFeed failed", cameraFeed.getError());
+                    setState(cameraFeed.getError());
+                }
                 break;
+            }
 
             default:
-                Log.d(TAG, "Unhandled CameraFeed state: " + state);
                 break;
         }
     }
@@ -0,0 +1,71 @@
+package com.nascentdigital.device;
+
+
+public final class CaptureBudget {
+
+    public static final CaptureBudget UNBOUNDED = new CaptureBudget(0, 0, 0, 0);
+    public static final CaptureBudget RESPONSIVE = new CaptureBudget(1000, 250, 1000, 2000);
+
+    // NOTE: unbounded by default, so 3A can take as long as it needs in low light
+    public static final CaptureBudget DEFAULT = UNBOUNDED;
+
+    private final long _focusTimeout;
+    private final long _precaptureStartTimeout;
+    private final long _precaptureTimeout;
+    private final long _totalTimeout;
+
+
+    public CaptureBudget(long focusTimeout, long precaptureStartTimeout,
+                         long precaptureTimeout, long totalTimeout) {
+
+        // verify timeouts (0 means unbounded)
+        if (focusTimeout < 0 || precaptureStartTimeout < 0
+            || precaptureTimeout < 0 || totalTimeout < 0) {
+            throw new IllegalArgumentException(
+                "Capture timeouts cannot be negative.");
+        }
+
+        // initialize instance variables
+        _focusTimeout = focusTimeout;
+        _precaptureStartTimeout = precaptureStartTimeout;
+        _precaptureTimeout = precaptureTimeout;
+        _totalTimeout = totalTimeout;
+    }
+
+    public long getFocusTimeout() {
+        return _focusTimeout;
+    }
+
+    public long getPrecaptureStartTimeout() {
+        return _precaptureStartTimeout;
+    }
+
+    public long getPrecaptureTimeout() {
+        return _precaptureTimeout;
+    }
+
+    public long getTotalTimeout() {
+        return _totalTimeout;
+    }
+
+    public long getTimeout(CaptureReport.Phase phase) {
+        switch (phase) {
+            case FOCUS:
+                return _focusTimeout;
+            case PRECAPTURE_START:
+                return _precaptureStartTimeout;
+            case PRECAPTURE:
+                return _precaptureTimeout;
+            default:
+                return _totalTimeout;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CaptureBudget(focus " + _focusTimeout
+            + " ms, precapture start " + _precaptureStartTimeout
+            + " ms, precapture " + _precaptureTimeout
+            + " ms, total " + _totalTimeout + " ms)";
+    }
+}
@@ -0,0 +1,93 @@
+package com.nascentdigital.device;
+
+import android.graphics.Rect;
+import android.hardware.camera2.CaptureResult;
+
+
+public final class CaptureMetadata {
+
+    private final long _timestamp;
+    private final long _frameNumber;
+    private final long _exposureTime;
+    private final int _sensitivity;
+    private final float _focusDistance;
+    private final int _afState;
+    private final int _aeState;
+    private final Rect _cropRegion;
+
+
+    CaptureMetadata(long timestamp, long frameNumber, long exposureTime,
+                    int sensitivity, float focusDistance, int afState,
+                    int aeState, Rect cropRegion) {
+
+        // initialize instance variables
+        _timestamp = timestamp;
+        _frameNumber = frameNumber;
+        _exposureTime = exposureTime;
+        _sensitivity = sensitivity;
+        _focusDistance = focusDistance;
+        _afState = afState;
+        _aeState = aeState;
+        _cropRegion = cropRegion;
+    }
+
+    static CaptureMetadata from(CaptureResult result) {
+
+        // copy subset of result (unreported values use -1 / NaN)
+        return new CaptureMetadata(
+            get(result, CaptureResult.SENSOR_TIMESTAMP, -1L),
+            result.getFrameNumber(),
+            get(result, CaptureResult.SENSOR_EXPOSURE_TIME, -1L),
+            get(result, CaptureResult.SENSOR_SENSITIVITY, -1),
+            get(result, CaptureResult.LENS_FOCUS_DISTANCE, Float.NaN),
+            get(result, CaptureResult.CONTROL_AF_STATE, -1),
+            get(result, CaptureResult.CONTROL_AE_STATE, -1),
+            result.get(CaptureResult.SCALER_CROP_REGION));
+    }
+
+    private static <T> T get(CaptureResult result, CaptureResult.Key<T> key,
+                             T defaultValue) {
+        T value = result.get(key);
+        return value == null ? defaultValue : value;
+    }
+
+    public long getTimestamp() {
+        return _timestamp;
+    }
+
+    public long getFrameNumber() {
+        return _frameNumber;
+    }
+
+    public long getExposureTime() {
+        return _exposureTime;
+    }
+
+    public int getSensitivity() {
+        return _sensitivity;
+    }
+
+    public float getFocusDistance() {
+        return _focusDistance;
+    }
+
+    public int getAfState() {
+        return _afState;
+    }
+
+    public int getAeState() {
+        return _aeState;
+    }
+
+    // NOTE: null if not reported (active array coordinates)
+    public Rect getCropRegion() {
+        return _cropRegion;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptureMetadata(" + _timestamp + " ns, frame " + _frameNumber
+            + ", exposure " + _exposureTime + " ns, ISO " + _sensitivity
+            + ", focus " + _focusDistance + " D)";
+    }
+}
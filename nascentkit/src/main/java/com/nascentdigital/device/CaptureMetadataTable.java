@@ -0,0 +1,176 @@
+package com.nascentdigital.device;
+
+import android.graphics.Rect;
+import android.hardware.camera2.CaptureResult;
+
+import java.util.concurrent.TimeUnit;
+
+
+final class CaptureMetadataTable {
+
+    static final long DEFAULT_MAX_AGE = TimeUnit.SECONDS.toNanos(1);
+    static final int DEFAULT_MAX_FRAME_RATE = 60;
+
+    private final long _maxAge;
+    private Slot[] _slots;
+    private int _mask;
+    private int _cursor;
+    private long _latestTimestamp;
+
+
+    CaptureMetadataTable() {
+        this(DEFAULT_MAX_AGE, DEFAULT_MAX_FRAME_RATE);
+    }
+
+    CaptureMetadataTable(long maxAge, int maxFrameRate) {
+
+        // initialize instance variables
+        _maxAge = maxAge;
+        _latestTimestamp = Long.MIN_VALUE;
+        setMaxFrameRate(maxFrameRate);
+    }
+
+    static int getCapacity(long maxAge, int maxFrameRate) {
+
+        // fail if the frame rate is invalid
+        if (maxFrameRate < 1) {
+            throw new IllegalArgumentException(
+                "Frame rate must be positive: " + maxFrameRate);
+        }
+
+        // count frames delivered within max age (at least one)
+        final long nanosPerSecond = TimeUnit.SECONDS.toNanos(1);
+        final int frames = (int) Math.max(1,
+            (maxAge * maxFrameRate + nanosPerSecond - 1) / nanosPerSecond);
+
+        // round up to a power of 2 (slots are indexed with a mask)
+        return frames == 1
+            ? 1
+            : Integer.highestOneBit(frames - 1) << 1;
+    }
+
+    int getCapacity() {
+        return _slots.length;
+    }
+
+    synchronized void setMaxFrameRate(int maxFrameRate) {
+
+        // skip if capacity is unchanged
+        final int capacity = getCapacity(_maxAge, maxFrameRate);
+        if (_slots != null && _slots.length == capacity) {
+            return;
+        }
+
+        // preallocate slots (reused for every frame)
+        _slots = new Slot[capacity];
+        for (int i = 0; i < capacity; ++i) {
+            _slots[i] = new Slot();
+        }
+        _mask = capacity - 1;
+        _cursor = 0;
+        _latestTimestamp = Long.MIN_VALUE;
+    }
+
+    void put(CaptureResult result) {
+
+        // skip results without a sensor timestamp
+        final Long timestamp = result.get(CaptureResult.SENSOR_TIMESTAMP);
+        if (timestamp == null) {
+            return;
+        }
+
+        // copy subset of result (unreported values use -1 / NaN)
+        final Long exposureTime = result.get(CaptureResult.SENSOR_EXPOSURE_TIME);
+        final Integer sensitivity = result.get(CaptureResult.SENSOR_SENSITIVITY);
+        final Float focusDistance = result.get(CaptureResult.LENS_FOCUS_DISTANCE);
+        final Integer afState = result.get(CaptureResult.CONTROL_AF_STATE);
+        final Integer aeState = result.get(CaptureResult.CONTROL_AE_STATE);
+        put(timestamp, result.getFrameNumber(),
+            exposureTime == null ? -1 : exposureTime,
+            sensitivity == null ? -1 : sensitivity,
+            focusDistance == null ? Float.NaN : focusDistance,
+            afState == null ? -1 : afState,
+            aeState == null ? -1 : aeState,
+            result.get(CaptureResult.SCALER_CROP_REGION));
+    }
+
+    synchronized void put(long timestamp, long frameNumber, long exposureTime,
+                          int sensitivity, float focusDistance, int afState,
+                          int aeState, Rect cropRegion) {
+
+        // skip results without a sensor timestamp
+        if (timestamp < 0) {
+            return;
+        }
+
+        // advance latest timestamp (results can arrive out of order)
+        if (timestamp > _latestTimestamp) {
+            _latestTimestamp = timestamp;
+        }
+
+        // overwrite oldest slot (bounds table size)
+        final Slot slot = _slots[_cursor++ & _mask];
+        slot.timestamp = timestamp;
+        slot.frameNumber = frameNumber;
+        slot.exposureTime = exposureTime;
+        slot.sensitivity = sensitivity;
+        slot.focusDistance = focusDistance;
+        slot.afState = afState;
+        slot.aeState = aeState;
+        slot.cropRegion = cropRegion;
+    }
+
+    synchronized CaptureMetadata get(long timestamp) {
+
+        // skip if timestamp has aged out
+        final long latest = _latestTimestamp;
+        if (timestamp < 0 || latest - timestamp > _maxAge) {
+            return null;
+        }
+
+        // find matching slot, evicting aged slots along the way
+        Slot match = null;
+        for (Slot slot : _slots) {
+            if (slot.timestamp < 0) {
+                continue;
+            }
+            if (slot.timestamp == timestamp) {
+                match = slot;
+            }
+            else if (latest - slot.timestamp > _maxAge) {
+                slot.timestamp = -1;
+                slot.cropRegion = null;
+            }
+        }
+
+        // copy match (slots are overwritten by later frames)
+        return match == null
+            ? null
+            : new CaptureMetadata(match.timestamp, match.frameNumber,
+                match.exposureTime, match.sensitivity, match.focusDistance,
+                match.afState, match.aeState, match.cropRegion);
+    }
+
+    synchronized void clear() {
+
+        // drop all entries
+        for (Slot slot : _slots) {
+            slot.timestamp = -1;
+            slot.cropRegion = null;
+        }
+        _latestTimestamp = Long.MIN_VALUE;
+    }
+
+
+    private static final class Slot {
+
+        long timestamp = -1;
+        long frameNumber;
+        long exposureTime;
+        int sensitivity;
+        float focusDistance;
+        int afState;
+        int aeState;
+        Rect cropRegion;
+    }
+}
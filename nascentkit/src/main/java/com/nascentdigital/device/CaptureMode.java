@@ -0,0 +1,12 @@
+package com.nascentdigital.device;
+
+
+public enum CaptureMode {
+
+    // submit stills alongside the repeating preview request (preview keeps running)
+    KEEP_PREVIEW,
+
+    // stop the preview (flushing in-flight frames) for each still, then restart
+    // it (default)
+    PAUSE_PREVIEW
+}
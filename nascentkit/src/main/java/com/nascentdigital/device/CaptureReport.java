@@ -0,0 +1,65 @@
+package com.nascentdigital.device;
+
+
+public final class CaptureReport {
+
+    public enum Phase {
+        FOCUS,
+        PRECAPTURE_START,
+        PRECAPTURE,
+        TOTAL
+    }
+
+    private final long _focusDuration;
+    private final long _precaptureStartDuration;
+    private final long _precaptureDuration;
+    private final long _totalDuration;
+    private final Phase _timedOutPhase;
+
+
+    CaptureReport(long focusDuration, long precaptureStartDuration,
+                  long precaptureDuration, long totalDuration,
+                  Phase timedOutPhase) {
+
+        // initialize instance variables
+        _focusDuration = focusDuration;
+        _precaptureStartDuration = precaptureStartDuration;
+        _precaptureDuration = precaptureDuration;
+        _totalDuration = totalDuration;
+        _timedOutPhase = timedOutPhase;
+    }
+
+    public long getFocusDuration() {
+        return _focusDuration;
+    }
+
+    public long getPrecaptureStartDuration() {
+        return _precaptureStartDuration;
+    }
+
+    public long getPrecaptureDuration() {
+        return _precaptureDuration;
+    }
+
+    public long getTotalDuration() {
+        return _totalDuration;
+    }
+
+    public boolean isTimedOut() {
+        return _timedOutPhase != null;
+    }
+
+    public Phase getTimedOutPhase() {
+        return _timedOutPhase;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptureReport(focus " + _focusDuration
+            + " ms, precapture start " + _precaptureStartDuration
+            + " ms, precapture " + _precaptureDuration
+            + " ms, total " + _totalDuration + " ms"
+            + (_timedOutPhase == null ? "" : ", timed out in " + _timedOutPhase)
+            + ")";
+    }
+}
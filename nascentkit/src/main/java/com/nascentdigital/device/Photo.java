@@ -0,0 +1,39 @@
+package com.nascentdigital.device;
+
+import android.graphics.Bitmap;
+
+
+public final class Photo {
+
+    private final Bitmap _bitmap;
+    private final int _orientation;
+    private final CaptureMetadata _metadata;
+
+
+    Photo(Bitmap bitmap, int orientation, CaptureMetadata metadata) {
+
+        // initialize instance variables
+        _bitmap = bitmap;
+        _orientation = orientation;
+        _metadata = metadata;
+    }
+
+    public Bitmap getBitmap() {
+        return _bitmap;
+    }
+
+    public int getOrientation() {
+        return _orientation;
+    }
+
+    // NOTE: null if the capture result wasn't delivered
+    public CaptureMetadata getMetadata() {
+        return _metadata;
+    }
+
+    @Override
+    public String toString() {
+        return "Photo(" + _bitmap.getWidth() + "x" + _bitmap.getHeight() + ", "
+            + _orientation + " deg, " + _metadata + ")";
+    }
+}
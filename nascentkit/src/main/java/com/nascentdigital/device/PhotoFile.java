@@ -0,0 +1,73 @@
+package com.nascentdigital.device;
+
+import java.io.File;
+
+
+public final class PhotoFile {
+
+    private final File _file;
+    private final long _size;
+    private final int _width;
+    private final int _height;
+    private final int _orientation;
+    private final long _captureDuration;
+    private final long _writeDuration;
+    private final CaptureMetadata _metadata;
+
+
+    PhotoFile(File file, long size, int width, int height, int orientation,
+              long captureDuration, long writeDuration,
+              CaptureMetadata metadata) {
+
+        // initialize instance variables
+        _file = file;
+        _size = size;
+        _width = width;
+        _height = height;
+        _orientation = orientation;
+        _captureDuration = captureDuration;
+        _writeDuration = writeDuration;
+        _metadata = metadata;
+    }
+
+    public File getFile() {
+        return _file;
+    }
+
+    public long getSize() {
+        return _size;
+    }
+
+    public int getWidth() {
+        return _width;
+    }
+
+    public int getHeight() {
+        return _height;
+    }
+
+    public int getOrientation() {
+        return _orientation;
+    }
+
+    public long getCaptureDuration() {
+        return _captureDuration;
+    }
+
+    public long getWriteDuration() {
+        return _writeDuration;
+    }
+
+    // NOTE: null if the capture result wasn't delivered
+    public CaptureMetadata getMetadata() {
+        return _metadata;
+    }
+
+    @Override
+    public String toString() {
+        return "PhotoFile(" + _file + ", " + _size + " bytes, "
+            + _width + "x" + _height + ", " + _orientation + " deg, capture "
+            + _captureDuration + " ms, write " + _writeDuration + " ms, "
+            + _metadata + ")";
+    }
+}
@@ -0,0 +1,47 @@
+package com.nascentdigital.device;
+
+import android.graphics.Bitmap;
+
+
+public final class PhotoStage {
+
+    public enum Type {
+        THUMBNAIL,
+        FULL
+    }
+
+    private final Type _type;
+    private final Bitmap _bitmap;
+    private final long _elapsed;
+
+
+    PhotoStage(Type type, Bitmap bitmap, long elapsed) {
+
+        // initialize instance variables
+        _type = type;
+        _bitmap = bitmap;
+        _elapsed = elapsed;
+    }
+
+    public Type getType() {
+        return _type;
+    }
+
+    public boolean isFinal() {
+        return _type == Type.FULL;
+    }
+
+    public Bitmap getBitmap() {
+        return _bitmap;
+    }
+
+    public long getElapsed() {
+        return _elapsed;
+    }
+
+    @Override
+    public String toString() {
+        return "PhotoStage(" + _type + ", " + _bitmap + ", "
+            + _elapsed + " ms)";
+    }
+}
@@ -0,0 +1,87 @@
+package com.nascentdigital.device.backend;
+
+
+public final class StillCaptureSequence {
+
+    // auto-focus states (matches CaptureResult.CONTROL_AF_STATE_*)
+    public static final int AF_STATE_INACTIVE = 0;
+    public static final int AF_STATE_PASSIVE_SCAN = 1;
+    public static final int AF_STATE_PASSIVE_FOCUSED = 2;
+    public static final int AF_STATE_ACTIVE_SCAN = 3;
+    public static final int AF_STATE_FOCUSED_LOCKED = 4;
+    public static final int AF_STATE_NOT_FOCUSED_LOCKED = 5;
+
+    // auto-exposure states (matches CaptureResult.CONTROL_AE_STATE_*)
+    public static final int AE_STATE_INACTIVE = 0;
+    public static final int AE_STATE_SEARCHING = 1;
+    public static final int AE_STATE_CONVERGED = 2;
+    public static final int AE_STATE_LOCKED = 3;
+    public static final int AE_STATE_FLASH_REQUIRED = 4;
+    public static final int AE_STATE_PRECAPTURE = 5;
+
+    // state that wasn't reported
+    public static final int STATE_UNKNOWN = -1;
+
+    public enum State {
+        IDLE,
+        FOCUSING,
+        CAPTURE_INIT,
+        CAPTURING,
+        CAPTURED
+    }
+
+
+    private StillCaptureSequence() {
+    }
+
+    public static boolean isWaiting(State state) {
+        return state == State.FOCUSING
+            || state == State.CAPTURE_INIT
+            || state == State.CAPTURING;
+    }
+
+    // NOTE: unreported states are STATE_UNKNOWN
+    public static State next(State state, int afState, int aeState) {
+        switch (state) {
+
+            case FOCUSING:
+
+                // take picture if auto-focus is not present
+                if (afState == STATE_UNKNOWN) {
+                    return State.CAPTURED;
+                }
+
+                // or handle case where focus is complete
+                if (afState == AF_STATE_FOCUSED_LOCKED
+                    || afState == AF_STATE_NOT_FOCUSED_LOCKED) {
+
+                    // take picture if auto-exposure is complete (or not
+                    // available), otherwise start auto-exposure
+                    return aeState == STATE_UNKNOWN
+                        || aeState == AE_STATE_CONVERGED
+                        ? State.CAPTURED
+                        : State.CAPTURE_INIT;
+                }
+                return state;
+
+            case CAPTURE_INIT:
+
+                // move to capturing if exposure is ready
+                return aeState == STATE_UNKNOWN
+                    || aeState == AE_STATE_PRECAPTURE
+                    || aeState == AE_STATE_FLASH_REQUIRED
+                    ? State.CAPTURING
+                    : state;
+
+            case CAPTURING:
+
+                // move to captured if exposure is complete
+                return aeState != AE_STATE_PRECAPTURE
+                    ? State.CAPTURED
+                    : state;
+
+            default:
+                return state;
+        }
+    }
+}
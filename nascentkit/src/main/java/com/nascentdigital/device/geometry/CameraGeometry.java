@@ -0,0 +1,83 @@
+package com.nascentdigital.device.geometry;
+
+
+public final class CameraGeometry {
+
+    // display rotations (matches android.view.Surface.ROTATION_*)
+    public static final int ROTATION_0 = 0;
+    public static final int ROTATION_90 = 1;
+    public static final int ROTATION_180 = 2;
+    public static final int ROTATION_270 = 3;
+
+    private static final int[] ORIENTATIONS = { 90, 0, 270, 180 };
+
+
+    private CameraGeometry() {
+    }
+
+    public static boolean isValidRotation(int displayRotation) {
+        return displayRotation >= ROTATION_0 && displayRotation <= ROTATION_270;
+    }
+
+    public static boolean isAxisFlipped(int displayRotation, int sensorOrientation) {
+
+        // figure out if we need to flip display axis to match camera
+        switch (displayRotation) {
+
+            case ROTATION_0:
+            case ROTATION_180:
+                return sensorOrientation == 90 || sensorOrientation == 270;
+
+            case ROTATION_90:
+            case ROTATION_270:
+                return sensorOrientation == 0 || sensorOrientation == 180;
+
+            default:
+                return false;
+        }
+    }
+
+    public static int getJpegOrientation(int displayRotation, int sensorOrientation) {
+
+        // combine display and sensor rotation (ignores invalid display rotation)
+        int displayOrientation = isValidRotation(displayRotation)
+            ? ORIENTATIONS[displayRotation]
+            : 0;
+        return (displayOrientation + sensorOrientation + 270) % 360;
+    }
+
+    public static PreviewConstraints getPreviewConstraints(
+        int viewWidth, int viewHeight, int displayWidth, int displayHeight,
+        int displayRotation, int sensorOrientation,
+        int maxPreviewWidth, int maxPreviewHeight) {
+
+        // determine preview dimensions (in sensor orientation)
+        final boolean flipAxis = isAxisFlipped(displayRotation, sensorOrientation);
+        int minWidth, minHeight;
+        int maxWidth, maxHeight;
+        if (flipAxis) {
+            minWidth = viewHeight;
+            minHeight = viewWidth;
+            maxWidth = displayHeight;
+            maxHeight = displayWidth;
+        }
+        else {
+            minWidth = viewWidth;
+            minHeight = viewHeight;
+            maxWidth = displayWidth;
+            maxHeight = displayHeight;
+        }
+
+        // clamp max dimensions
+        if (maxWidth > maxPreviewWidth) {
+            maxWidth = maxPreviewWidth;
+        }
+        if (maxHeight > maxPreviewHeight) {
+            maxHeight = maxPreviewHeight;
+        }
+
+        // return constraints
+        return new PreviewConstraints(flipAxis, minWidth, minHeight,
+            maxWidth, maxHeight);
+    }
+}
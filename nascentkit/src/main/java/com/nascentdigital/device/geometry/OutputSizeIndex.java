@@ -0,0 +1,252 @@
+package com.nascentdigital.device.geometry;
+
+import java.util.Arrays;
+
+
+// NOTE: immutable; queries return indexes into the original size arrays
+public final class OutputSizeIndex {
+
+    private final int _count;
+    private final int[] _widths;
+    private final int[] _heights;
+    private final long[] _areas;
+    private final int[] _order;
+    private final long[] _aspects;
+    private final int[] _aspectStarts;
+    private final int[] _aspectMembers;
+
+
+    public OutputSizeIndex(int[] widths, int[] heights) {
+
+        // fail if sizes don't line up
+        if (widths.length != heights.length) {
+            throw new IllegalArgumentException(
+                "Widths and heights must have the same length.");
+        }
+
+        // sort sizes by area (ties by width), keeping original indexes
+        final int count = widths.length;
+        final long[] sortKeys = new long[count];
+        for (int i = 0; i < count; ++i) {
+            sortKeys[i] = (long) widths[i] * heights[i];
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; ++i) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (lhs, rhs) -> sortKeys[lhs] != sortKeys[rhs]
+            ? Long.compare(sortKeys[lhs], sortKeys[rhs])
+            : Integer.compare(widths[lhs], widths[rhs]));
+
+        // store sorted sizes in primitive arrays
+        _count = count;
+        _widths = new int[count];
+        _heights = new int[count];
+        _areas = new long[count];
+        _order = new int[count];
+        for (int i = 0; i < count; ++i) {
+            final int index = order[i];
+            _order[i] = index;
+            _widths[i] = widths[index];
+            _heights[i] = heights[index];
+            _areas[i] = sortKeys[index];
+        }
+
+        // group sorted positions by reduced aspect ratio (stable, so each
+        // group stays sorted by area)
+        final long[] aspects = new long[count];
+        for (int i = 0; i < count; ++i) {
+            aspects[i] = getAspectKey(_widths[i], _heights[i]);
+        }
+        Integer[] members = new Integer[count];
+        for (int i = 0; i < count; ++i) {
+            members[i] = i;
+        }
+        Arrays.sort(members, (lhs, rhs) -> Long.compare(aspects[lhs], aspects[rhs]));
+
+        // build group table
+        int groupCount = 0;
+        for (int i = 0; i < count; ++i) {
+            if (i == 0 || aspects[members[i]] != aspects[members[i - 1]]) {
+                ++groupCount;
+            }
+        }
+        _aspects = new long[groupCount];
+        _aspectStarts = new int[groupCount + 1];
+        _aspectMembers = new int[count];
+        int group = -1;
+        for (int i = 0; i < count; ++i) {
+            final int member = members[i];
+            if (i == 0 || aspects[member] != aspects[members[i - 1]]) {
+                ++group;
+                _aspects[group] = aspects[member];
+                _aspectStarts[group] = i;
+            }
+            _aspectMembers[i] = member;
+        }
+        _aspectStarts[groupCount] = count;
+    }
+
+    public int size() {
+        return _count;
+    }
+
+    public int getAspectCount() {
+        return _aspects.length;
+    }
+
+    public int largest() {
+        return _count == 0 ? -1 : _order[_count - 1];
+    }
+
+    public int smallest() {
+        return _count == 0 ? -1 : _order[0];
+    }
+
+    public int largestAtMost(long maxArea) {
+
+        // find last size with area within limit
+        int low = 0;
+        int high = _count - 1;
+        int match = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (_areas[mid] <= maxArea) {
+                match = mid;
+                low = mid + 1;
+            }
+            else {
+                high = mid - 1;
+            }
+        }
+        return match < 0 ? -1 : _order[match];
+    }
+
+    public int smallestAtLeast(int minWidth, int minHeight,
+                               int aspectWidth, int aspectHeight) {
+
+        // resolve sizes matching aspect ratio
+        final int group = findAspect(aspectWidth, aspectHeight);
+        if (group < 0) {
+            return -1;
+        }
+
+        // return first size that covers the minimum size
+        final int position = findAtLeast(group, minWidth, minHeight,
+            aspectWidth, aspectHeight);
+        return position < _aspectStarts[group + 1]
+            ? _order[_aspectMembers[position]]
+            : -1;
+    }
+
+    public int largestAtMost(int maxWidth, int maxHeight,
+                             int aspectWidth, int aspectHeight) {
+
+        // resolve sizes matching aspect ratio
+        final int group = findAspect(aspectWidth, aspectHeight);
+        if (group < 0) {
+            return -1;
+        }
+
+        // return last size that fits within the maximum size
+        final int position = findAtMost(group, maxWidth, maxHeight,
+            aspectWidth, aspectHeight);
+        return position >= _aspectStarts[group]
+            ? _order[_aspectMembers[position]]
+            : -1;
+    }
+
+    public int chooseOptimalSize(int minWidth, int minHeight,
+                                 int maxWidth, int maxHeight,
+                                 int aspectWidth, int aspectHeight) {
+
+        // resolve sizes matching aspect ratio
+        final int group = findAspect(aspectWidth, aspectHeight);
+        if (group < 0) {
+            return -1;
+        }
+
+        // prefer the smallest size that covers the minimum (within maximum)
+        final int bigEnough = findAtLeast(group, minWidth, minHeight,
+            aspectWidth, aspectHeight);
+        final int fits = findAtMost(group, maxWidth, maxHeight,
+            aspectWidth, aspectHeight);
+        if (bigEnough <= fits) {
+            return _order[_aspectMembers[bigEnough]];
+        }
+
+        // or fall back to the largest size within the maximum
+        return fits >= _aspectStarts[group]
+            ? _order[_aspectMembers[fits]]
+            : -1;
+    }
+
+    private int findAtLeast(int group, int minWidth, int minHeight,
+                            int aspectWidth, int aspectHeight) {
+
+        // sizes in a group share aspect, so width order matches area order
+        final long width = Math.max(minWidth,
+            ceilDiv((long) minHeight * aspectWidth, aspectHeight));
+        return searchWidth(_aspectStarts[group], _aspectStarts[group + 1], width);
+    }
+
+    private int findAtMost(int group, int maxWidth, int maxHeight,
+                           int aspectWidth, int aspectHeight) {
+
+        // find last group member no wider than the limit
+        final long width = Math.min(maxWidth,
+            (long) maxHeight * aspectWidth / aspectHeight);
+        return searchWidth(_aspectStarts[group], _aspectStarts[group + 1],
+            width + 1) - 1;
+    }
+
+    private int findAspect(int aspectWidth, int aspectHeight) {
+
+        // skip invalid aspect ratios
+        if (aspectWidth <= 0 || aspectHeight <= 0) {
+            return -1;
+        }
+        final int group = Arrays.binarySearch(_aspects,
+            getAspectKey(aspectWidth, aspectHeight));
+        return group >= 0 ? group : -1;
+    }
+
+    private int searchWidth(int start, int end, long width) {
+
+        // find first group member with at least the given width
+        int low = start;
+        int high = end;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (_widths[_aspectMembers[mid]] < width) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static long getAspectKey(int width, int height) {
+
+        // reduce ratio and pack into a single key
+        final int divisor = gcd(width, height);
+        return divisor == 0
+            ? 0
+            : ((long) (width / divisor) << 32) | (height / divisor);
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            final int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    private static long ceilDiv(long value, int divisor) {
+        return (value + divisor - 1) / divisor;
+    }
+}
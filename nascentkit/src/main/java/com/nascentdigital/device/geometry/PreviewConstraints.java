@@ -0,0 +1,27 @@
+package com.nascentdigital.device.geometry;
+
+
+public final class PreviewConstraints {
+
+    public final boolean flipAxis;
+    public final int minWidth;
+    public final int minHeight;
+    public final int maxWidth;
+    public final int maxHeight;
+
+
+    PreviewConstraints(boolean flipAxis, int minWidth, int minHeight,
+                       int maxWidth, int maxHeight) {
+        this.flipAxis = flipAxis;
+        this.minWidth = minWidth;
+        this.minHeight = minHeight;
+        this.maxWidth = maxWidth;
+        this.maxHeight = maxHeight;
+    }
+
+    @Override
+    public String toString() {
+        return "PreviewConstraints(" + minWidth + "x" + minHeight + " -> "
+            + maxWidth + "x" + maxHeight + (flipAxis ? ", flipped" : "") + ")";
+    }
+}
@@ -0,0 +1,108 @@
+package com.nascentdigital.device.geometry;
+
+
+public final class PreviewTransform {
+
+    public static final PreviewTransform IDENTITY
+        = new PreviewTransform(1, 0, 0, 0, 1, 0, 1, 0);
+
+    private final float _scaleX;
+    private final float _skewX;
+    private final float _translateX;
+    private final float _skewY;
+    private final float _scaleY;
+    private final float _translateY;
+    private final float _scale;
+    private final int _rotation;
+
+
+    private PreviewTransform(float scaleX, float skewX, float translateX,
+                             float skewY, float scaleY, float translateY,
+                             float scale, int rotation) {
+        _scaleX = scaleX;
+        _skewX = skewX;
+        _translateX = translateX;
+        _skewY = skewY;
+        _scaleY = scaleY;
+        _translateY = translateY;
+        _scale = scale;
+        _rotation = rotation;
+    }
+
+    public static PreviewTransform compute(int previewWidth, int previewHeight,
+                                           int bufferWidth, int bufferHeight,
+                                           int displayRotation) {
+
+        // capture sizing inputs
+        final float centerX = previewWidth / 2f;
+        final float centerY = previewHeight / 2f;
+
+        // rotate and fit if rotated perpendicularly
+        if (displayRotation == CameraGeometry.ROTATION_90
+            || displayRotation == CameraGeometry.ROTATION_270) {
+
+            // fill preview with centered (swapped) buffer rect
+            final float fillX = (float) bufferHeight / previewWidth;
+            final float fillY = (float) bufferWidth / previewHeight;
+
+            // scale to cover preview
+            final float scale = Math.max(
+                (float) previewHeight / bufferHeight,
+                (float) previewWidth / bufferWidth);
+            final float scaleX = scale * fillX;
+            final float scaleY = scale * fillY;
+            final float offsetX = -scale * bufferHeight / 2f;
+            final float offsetY = -scale * bufferWidth / 2f;
+
+            // rotate about center (-90 for ROTATION_90, 90 for ROTATION_270)
+            final int rotation = 90 * (displayRotation - 2);
+            final float sin = rotation > 0 ? 1 : -1;
+            return new PreviewTransform(
+                0, -sin * scaleY, -sin * offsetY + centerX,
+                sin * scaleX, 0, sin * offsetX + centerY,
+                scale, rotation);
+        }
+
+        // or just rotate if upside down
+        else if (displayRotation == CameraGeometry.ROTATION_180) {
+            return new PreviewTransform(
+                -1, 0, 2 * centerX,
+                0, -1, 2 * centerY,
+                1, 180);
+        }
+
+        // otherwise, leave preview as-is
+        return IDENTITY;
+    }
+
+    public float getScale() {
+        return _scale;
+    }
+
+    public int getRotation() {
+        return _rotation;
+    }
+
+    public boolean isIdentity() {
+        return this == IDENTITY;
+    }
+
+    public void getValues(float[] values) {
+
+        // write 3x3 matrix (android.graphics.Matrix value order)
+        values[0] = _scaleX;
+        values[1] = _skewX;
+        values[2] = _translateX;
+        values[3] = _skewY;
+        values[4] = _scaleY;
+        values[5] = _translateY;
+        values[6] = 0;
+        values[7] = 0;
+        values[8] = 1;
+    }
+
+    @Override
+    public String toString() {
+        return "PreviewTransform(rotate " + _rotation + ", scale " + _scale + ")";
+    }
+}
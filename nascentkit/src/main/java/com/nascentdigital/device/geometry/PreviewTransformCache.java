@@ -0,0 +1,114 @@
+package com.nascentdigital.device.geometry;
+
+
+public final class PreviewTransformCache {
+
+    public static final int DEFAULT_CAPACITY = 8;
+
+    private final int[] _keys;
+    private final PreviewTransform[] _transforms;
+    private int _size;
+    private int _hits;
+    private int _misses;
+
+
+    public PreviewTransformCache() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public PreviewTransformCache(int capacity) {
+
+        // fail if capacity is invalid
+        if (capacity < 1) {
+            throw new IllegalArgumentException(
+                "Capacity must be positive: " + capacity);
+        }
+
+        // allocate fixed storage (5 key ints per entry)
+        _keys = new int[capacity * 5];
+        _transforms = new PreviewTransform[capacity];
+    }
+
+    public PreviewTransform get(int previewWidth, int previewHeight,
+                                int bufferWidth, int bufferHeight,
+                                int displayRotation) {
+
+        // return matching entry (promoted to most recent)
+        for (int i = 0; i < _size; ++i) {
+            final int k = i * 5;
+            if (_keys[k] == previewWidth
+                && _keys[k + 1] == previewHeight
+                && _keys[k + 2] == bufferWidth
+                && _keys[k + 3] == bufferHeight
+                && _keys[k + 4] == displayRotation) {
+                final PreviewTransform transform = _transforms[i];
+                promote(i);
+                ++_hits;
+                return transform;
+            }
+        }
+
+        // or compute and insert as most recent (evicting least recent)
+        final PreviewTransform transform = PreviewTransform.compute(
+            previewWidth, previewHeight, bufferWidth, bufferHeight,
+            displayRotation);
+        if (_size < _transforms.length) {
+            ++_size;
+        }
+        promote(_size - 1);
+        _keys[0] = previewWidth;
+        _keys[1] = previewHeight;
+        _keys[2] = bufferWidth;
+        _keys[3] = bufferHeight;
+        _keys[4] = displayRotation;
+        _transforms[0] = transform;
+        ++_misses;
+        return transform;
+    }
+
+    public int size() {
+        return _size;
+    }
+
+    public int getHits() {
+        return _hits;
+    }
+
+    public int getMisses() {
+        return _misses;
+    }
+
+    public void clear() {
+
+        // drop entries (keys are overwritten on insert)
+        for (int i = 0; i < _size; ++i) {
+            _transforms[i] = null;
+        }
+        _size = 0;
+    }
+
+    private void promote(int index) {
+
+        // skip if already most recent
+        if (index == 0) {
+            return;
+        }
+
+        // shift newer entries down and move entry to the front
+        final PreviewTransform transform = _transforms[index];
+        final int k = index * 5;
+        final int k0 = _keys[k];
+        final int k1 = _keys[k + 1];
+        final int k2 = _keys[k + 2];
+        final int k3 = _keys[k + 3];
+        final int k4 = _keys[k + 4];
+        System.arraycopy(_transforms, 0, _transforms, 1, index);
+        System.arraycopy(_keys, 0, _keys, 5, k);
+        _transforms[0] = transform;
+        _keys[0] = k0;
+        _keys[1] = k1;
+        _keys[2] = k2;
+        _keys[3] = k3;
+        _keys[4] = k4;
+    }
+}
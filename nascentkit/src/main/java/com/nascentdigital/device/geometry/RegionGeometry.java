@@ -0,0 +1,127 @@
+package com.nascentdigital.device.geometry;
+
+
+// NOTE: rects are {left, top, right, bottom} arrays
+public final class RegionGeometry {
+
+    private RegionGeometry() {
+    }
+
+    public static boolean isValidRegion(float[] region) {
+        return region[0] >= 0 && region[1] >= 0
+            && region[2] <= 1 && region[3] <= 1
+            && region[0] < region[2] && region[1] < region[3];
+    }
+
+    public static void toSensorRegion(float[] region, int orientation,
+                                      float[] sensorRegion) {
+
+        // capture upright corners
+        final float left = region[0];
+        final float top = region[1];
+        final float right = region[2];
+        final float bottom = region[3];
+
+        // undo clockwise rotation applied to sensor pixels
+        switch (orientation) {
+
+            case 90:
+                sensorRegion[0] = top;
+                sensorRegion[1] = 1 - right;
+                sensorRegion[2] = bottom;
+                sensorRegion[3] = 1 - left;
+                break;
+
+            case 180:
+                sensorRegion[0] = 1 - right;
+                sensorRegion[1] = 1 - bottom;
+                sensorRegion[2] = 1 - left;
+                sensorRegion[3] = 1 - top;
+                break;
+
+            case 270:
+                sensorRegion[0] = 1 - bottom;
+                sensorRegion[1] = left;
+                sensorRegion[2] = 1 - top;
+                sensorRegion[3] = right;
+                break;
+
+            default:
+                sensorRegion[0] = left;
+                sensorRegion[1] = top;
+                sensorRegion[2] = right;
+                sensorRegion[3] = bottom;
+                break;
+        }
+    }
+
+    public static void getCropRegion(float[] sensorRegion,
+                                     int activeWidth, int activeHeight,
+                                     int outputWidth, int outputHeight,
+                                     float maxZoom, int[] crop) {
+
+        // resolve region center and size (in active array pixels)
+        final float centerX = (sensorRegion[0] + sensorRegion[2]) / 2 * activeWidth;
+        final float centerY = (sensorRegion[1] + sensorRegion[3]) / 2 * activeHeight;
+        float width = (sensorRegion[2] - sensorRegion[0]) * activeWidth;
+        float height = (sensorRegion[3] - sensorRegion[1]) * activeHeight;
+
+        // grow to output aspect ratio (the HAL would otherwise trim the region)
+        final float aspect = (float) outputWidth / outputHeight;
+        if (width / height < aspect) {
+            width = height * aspect;
+        }
+        else {
+            height = width / aspect;
+        }
+
+        // grow to the smallest crop digital zoom allows
+        final float minWidth = activeWidth / Math.max(maxZoom, 1);
+        if (width < minWidth) {
+            height *= minWidth / width;
+            width = minWidth;
+        }
+
+        // shrink to fit active array (keeping aspect ratio)
+        if (width > activeWidth) {
+            height *= activeWidth / width;
+            width = activeWidth;
+        }
+        if (height > activeHeight) {
+            width *= activeHeight / height;
+            height = activeHeight;
+        }
+
+        // center on region, shifting back inside the active array
+        float left = Math.min(Math.max(centerX - width / 2, 0), activeWidth - width);
+        float top = Math.min(Math.max(centerY - height / 2, 0), activeHeight - height);
+        crop[0] = Math.round(left);
+        crop[1] = Math.round(top);
+        crop[2] = Math.round(left + width);
+        crop[3] = Math.round(top + height);
+    }
+
+    public static void mapToImage(float[] sensorRegion, int[] crop,
+                                  int activeWidth, int activeHeight,
+                                  int imageWidth, int imageHeight,
+                                  int[] imageRegion) {
+
+        // scale from crop (active array pixels) to image pixels
+        final float scaleX = (float) imageWidth / (crop[2] - crop[0]);
+        final float scaleY = (float) imageHeight / (crop[3] - crop[1]);
+        final float left = (sensorRegion[0] * activeWidth - crop[0]) * scaleX;
+        final float top = (sensorRegion[1] * activeHeight - crop[1]) * scaleY;
+        final float right = (sensorRegion[2] * activeWidth - crop[0]) * scaleX;
+        final float bottom = (sensorRegion[3] * activeHeight - crop[1]) * scaleY;
+
+        // clamp to image (never empty)
+        imageRegion[0] = clamp(Math.round(left), 0, imageWidth - 1);
+        imageRegion[1] = clamp(Math.round(top), 0, imageHeight - 1);
+        imageRegion[2] = clamp(Math.round(right), imageRegion[0] + 1, imageWidth);
+        imageRegion[3] = clamp(Math.round(bottom), imageRegion[1] + 1, imageHeight);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return value < min ? min : (value > max ? max : value);
+    }
+}
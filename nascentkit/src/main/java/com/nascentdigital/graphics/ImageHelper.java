@@ -3,9 +3,15 @@ package com.nascentdigital.graphics;
 
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.ImageFormat;
+import android.graphics.Matrix;
+import android.graphics.Rect;
 import android.media.Image;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 
 
 public final class ImageHelper {
@@ -13,7 +19,7 @@ public final class ImageHelper {
     private ImageHelper() {
     }
 
-    public static Bitmap createBitmap(Image image) {
+    public static ByteBuffer getBuffer(Image image) {
 
         // fail if the image data isn't single-planed
         Image.Plane[] planes = image.getPlanes();
@@ -22,8 +28,14 @@ public final class ImageHelper {
                 "Only single-plane images are supported.");
         }
 
+        // return mapped buffer
+        return planes[0].getBuffer();
+    }
+
+    public static byte[] getData(Image image) {
+
         // get mapped buffer if any
-        ByteBuffer imageBuffer = planes[0].getBuffer();
+        ByteBuffer imageBuffer = getBuffer(image);
         byte[] imageData;
         if (imageBuffer.hasArray()) {
             imageData = imageBuffer.array();
@@ -35,10 +47,117 @@ public final class ImageHelper {
             imageBuffer.get(imageData);
         }
 
+        // return data
+        return imageData;
+    }
+
+    public static Bitmap createBitmap(Image image) {
+
+        // create bitmap from data and return it
+        return createBitmap(getData(image), 1);
+    }
+
+    public static Bitmap createBitmapFromYuv(Image image) {
+
+        // fail if the image isn't planar YUV
+        Image.Plane[] planes = image.getPlanes();
+        if (image.getFormat() != ImageFormat.YUV_420_888 || planes.length != 3) {
+            throw new UnsupportedOperationException(
+                "Only YUV_420_888 images are supported.");
+        }
+
+        // convert row by row (avoids a full-frame pixel array)
+        final int width = image.getWidth();
+        final int height = image.getHeight();
+        final Bitmap bitmap = Bitmap.createBitmap(width, height,
+            Bitmap.Config.ARGB_8888);
+        final int[] row = new int[width];
+        for (int y = 0; y < height; ++y) {
+            YuvHelper.convertRow(
+                planes[0].getBuffer(), planes[0].getRowStride(),
+                planes[1].getBuffer(), planes[2].getBuffer(),
+                planes[1].getRowStride(), planes[1].getPixelStride(),
+                y, width, row);
+            bitmap.setPixels(row, 0, width, 0, y, width, 1);
+        }
+
+        // return bitmap
+        return bitmap;
+    }
+
+    public static Bitmap createBitmap(byte[] imageData, int sampleSize) {
+
+        // decode (sub-sampled if requested)
+        BitmapFactory.Options options = null;
+        if (sampleSize > 1) {
+            options = new BitmapFactory.Options();
+            options.inSampleSize = sampleSize;
+        }
+
         // create bitmap from data and return it
         Bitmap bitmap = BitmapFactory.decodeByteArray(imageData,
-            0, imageData.length);
+            0, imageData.length, options);
         return bitmap;
     }
-}
 
+    public static Bitmap decodeRegion(byte[] imageData, Rect region, int sampleSize)
+        throws IOException {
+
+        // decode only the requested rectangle (sub-sampled if requested)
+        BitmapRegionDecoder decoder = BitmapRegionDecoder.newInstance(imageData,
+            0, imageData.length, false);
+        try {
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inSampleSize = Math.max(sampleSize, 1);
+            return decoder.decodeRegion(region, options);
+        }
+
+        // release native decoder
+        finally {
+            decoder.recycle();
+        }
+    }
+
+    public static int getSampleSize(int width, int height, int targetSize) {
+
+        // use largest power of 2 that keeps the long edge above target
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (targetSize > 0 && longEdge / (sampleSize * 2) >= targetSize) {
+            sampleSize *= 2;
+        }
+
+        // return sample size
+        return sampleSize;
+    }
+
+    public static Bitmap rotateBitmap(Bitmap bitmap, int degrees) {
+
+        // skip if there's no rotation
+        if (degrees % 360 == 0) {
+            return bitmap;
+        }
+
+        // create transform matrix
+        Matrix matrix = new Matrix();
+        matrix.postRotate(degrees);
+
+        // create transformed bitmap
+        return Bitmap.createBitmap(bitmap, 0, 0,
+            bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    public static long writeBuffer(ByteBuffer buffer, FileChannel channel)
+        throws IOException {
+
+        // write remaining bytes without moving the source buffer position
+        ByteBuffer source = buffer.duplicate();
+        long written = 0;
+        while (source.hasRemaining()) {
+            written += channel.write(source);
+        }
+
+        // return byte count
+        return written;
+    }
+}
@@ -0,0 +1,212 @@
+package com.nascentdigital.graphics;
+
+
+import android.graphics.Bitmap;
+import android.support.media.ExifInterface;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+public final class JpegHelper {
+
+    private static final int MARKER_SOI = 0xD8;
+    private static final int MARKER_APP1 = 0xE1;
+    private static final int MARKER_SOS = 0xDA;
+    private static final int MARKER_EOI = 0xD9;
+    private static final int EXIF_TAG_ORIENTATION = 0x0112;
+
+
+    private JpegHelper() {
+    }
+
+    public static int getExifOrientation(int degrees) {
+
+        // map clockwise rotation to EXIF orientation
+        switch ((degrees % 360 + 360) % 360) {
+            case 90:
+                return ExifInterface.ORIENTATION_ROTATE_90;
+            case 180:
+                return ExifInterface.ORIENTATION_ROTATE_180;
+            case 270:
+                return ExifInterface.ORIENTATION_ROTATE_270;
+            default:
+                return ExifInterface.ORIENTATION_NORMAL;
+        }
+    }
+
+    public static Bitmap getThumbnail(byte[] jpeg) {
+
+        // read embedded thumbnail (if any)
+        try {
+            ExifInterface exif = new ExifInterface(new ByteArrayInputStream(jpeg));
+            return exif.hasThumbnail()
+                ? exif.getThumbnailBitmap()
+                : null;
+        }
+
+        // or skip if EXIF is unreadable
+        catch (IOException e) {
+            return null;
+        }
+    }
+
+    public static long writeJpeg(ByteBuffer jpeg, File file, int degrees)
+        throws IOException {
+
+        // find the existing orientation tag (if any)
+        final int orientation = getExifOrientation(degrees);
+        final int tagOffset = findOrientationTag(jpeg);
+
+        // stream encoded bytes straight to disk
+        long written;
+        try (FileOutputStream stream = new FileOutputStream(file);
+             FileChannel channel = stream.getChannel()) {
+
+            written = ImageHelper.writeBuffer(jpeg, channel);
+
+            // patch orientation in place when the encoder wrote the tag
+            if (tagOffset >= 0) {
+
+                // match byte order of the tag id (big endian is "01 12")
+                boolean bigEndian = jpeg.get(jpeg.position() + tagOffset - 8) == 0x01;
+                ByteBuffer value = ByteBuffer.allocate(2);
+                if (bigEndian) {
+                    value.put((byte) (orientation >> 8)).put((byte) orientation);
+                }
+                else {
+                    value.put((byte) orientation).put((byte) (orientation >> 8));
+                }
+                value.flip();
+                channel.write(value, tagOffset);
+            }
+        }
+
+        // or fall back to rewriting the EXIF header
+        if (tagOffset < 0) {
+            ExifInterface exif = new ExifInterface(file.getAbsolutePath());
+            exif.setAttribute(ExifInterface.TAG_ORIENTATION,
+                Integer.toString(orientation));
+            exif.saveAttributes();
+            written = file.length();
+        }
+
+        // return size on disk
+        return written;
+    }
+
+    static int findOrientationTag(ByteBuffer jpeg) {
+
+        // stop if the data isn't a JPEG
+        final int start = jpeg.position();
+        final int end = jpeg.limit();
+        if (end - start < 4
+            || (jpeg.get(start) & 0xFF) != 0xFF
+            || (jpeg.get(start + 1) & 0xFF) != MARKER_SOI) {
+            return -1;
+        }
+
+        // walk segment headers until the EXIF segment is found
+        int position = start + 2;
+        while (position + 4 <= end) {
+
+            // skip fill bytes
+            if ((jpeg.get(position) & 0xFF) != 0xFF) {
+                return -1;
+            }
+            int marker = jpeg.get(position + 1) & 0xFF;
+            if (marker == 0xFF) {
+                ++position;
+                continue;
+            }
+
+            // stop at image data
+            if (marker == MARKER_SOS || marker == MARKER_EOI) {
+                return -1;
+            }
+
+            // search EXIF segment
+            int length = readUInt16(jpeg, position + 2, true);
+            if (marker == MARKER_APP1) {
+                int tagOffset = findOrientationTag(jpeg, position + 4,
+                    Math.min(end, position + 2 + length));
+                if (tagOffset >= 0) {
+                    return tagOffset - start;
+                }
+            }
+
+            // move to next segment
+            position += 2 + length;
+        }
+
+        // not found
+        return -1;
+    }
+
+    private static int findOrientationTag(ByteBuffer jpeg, int position, int end) {
+
+        // verify EXIF header ("Exif\0\0") followed by TIFF header
+        if (position + 14 > end
+            || jpeg.get(position) != 'E'
+            || jpeg.get(position + 1) != 'x'
+            || jpeg.get(position + 2) != 'i'
+            || jpeg.get(position + 3) != 'f') {
+            return -1;
+        }
+        final int tiff = position + 6;
+        final boolean bigEndian;
+        if (jpeg.get(tiff) == 'M' && jpeg.get(tiff + 1) == 'M') {
+            bigEndian = true;
+        }
+        else if (jpeg.get(tiff) == 'I' && jpeg.get(tiff + 1) == 'I') {
+            bigEndian = false;
+        }
+        else {
+            return -1;
+        }
+
+        // read first IFD
+        final long ifdOffset = readUInt32(jpeg, tiff + 4, bigEndian);
+        if (ifdOffset < 8 || tiff + ifdOffset + 2 > end) {
+            return -1;
+        }
+        final int ifd = tiff + (int) ifdOffset;
+        final int entryCount = readUInt16(jpeg, ifd, bigEndian);
+        for (int i = 0; i < entryCount; ++i) {
+
+            // stop if entry is truncated
+            int entry = ifd + 2 + i * 12;
+            if (entry + 12 > end) {
+                break;
+            }
+
+            // return offset of value (SHORT values are left-justified)
+            if (readUInt16(jpeg, entry, bigEndian) == EXIF_TAG_ORIENTATION) {
+                return entry + 8;
+            }
+        }
+
+        // not found
+        return -1;
+    }
+
+    private static int readUInt16(ByteBuffer buffer, int position, boolean bigEndian) {
+        int b0 = buffer.get(position) & 0xFF;
+        int b1 = buffer.get(position + 1) & 0xFF;
+        return bigEndian
+            ? (b0 << 8) | b1
+            : (b1 << 8) | b0;
+    }
+
+    private static long readUInt32(ByteBuffer buffer, int position, boolean bigEndian) {
+        long first = readUInt16(buffer, position, bigEndian);
+        long second = readUInt16(buffer, position + 2, bigEndian);
+        return bigEndian
+            ? (first << 16) | second
+            : (second << 16) | first;
+    }
+}
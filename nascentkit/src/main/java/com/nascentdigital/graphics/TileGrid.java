@@ -0,0 +1,82 @@
+package com.nascentdigital.graphics;
+
+
+final class TileGrid {
+
+    private final int _width;
+    private final int _height;
+    private final int _tileSize;
+    private final int _levelCount;
+
+
+    TileGrid(int width, int height, int tileSize) {
+
+        // fail if sizing is invalid
+        if (width <= 0 || height <= 0 || tileSize <= 0) {
+            throw new IllegalArgumentException(
+                "Photo and tile sizes must be positive.");
+        }
+
+        // initialize instance variables
+        _width = width;
+        _height = height;
+        _tileSize = tileSize;
+
+        // add levels until the whole photo fits in a single tile
+        int levelCount = 1;
+        while (Math.max(width, height) >> (levelCount - 1) > tileSize) {
+            ++levelCount;
+        }
+        _levelCount = levelCount;
+    }
+
+    int getLevelCount() {
+        return _levelCount;
+    }
+
+    static int getSampleSize(int level) {
+        return 1 << level;
+    }
+
+    int getLevel(float scale) {
+
+        // use the coarsest level that still has enough pixels for the scale
+        int level = 0;
+        while (level < _levelCount - 1 && scale * (2 << level) <= 1) {
+            ++level;
+        }
+        return level;
+    }
+
+    int getColumnCount(int level) {
+        final int span = _tileSize << level;
+        return (_width + span - 1) / span;
+    }
+
+    int getRowCount(int level) {
+        final int span = _tileSize << level;
+        return (_height + span - 1) / span;
+    }
+
+    boolean isValidTile(int level, int column, int row) {
+        return level >= 0 && level < _levelCount
+            && column >= 0 && column < getColumnCount(level)
+            && row >= 0 && row < getRowCount(level);
+    }
+
+    void getTileBounds(int level, int column, int row, int[] bounds) {
+
+        // tile bounds in full-resolution pixels (edge tiles are clipped)
+        final int span = _tileSize << level;
+        final int left = column * span;
+        final int top = row * span;
+        bounds[0] = left;
+        bounds[1] = top;
+        bounds[2] = Math.min(left + span, _width);
+        bounds[3] = Math.min(top + span, _height);
+    }
+
+    static long getTileKey(int level, int column, int row) {
+        return ((long) level << 48) | ((long) column << 24) | row;
+    }
+}
@@ -0,0 +1,271 @@
+package com.nascentdigital.graphics;
+
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.util.Log;
+import android.util.LruCache;
+
+import com.nascentdigital.services.MemoryBudget;
+import com.nascentdigital.services.MemoryConsumer;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.schedulers.Schedulers;
+
+
+public final class TiledPhoto implements Closeable, MemoryConsumer {
+
+    public static final int DEFAULT_TILE_SIZE = 256;
+    public static final int DEFAULT_CACHE_SIZE = 24 * 1024 * 1024;
+
+    private static final String TAG = "nascent/TiledPhoto";
+
+    private final BitmapRegionDecoder _decoder;
+    private final int _width;
+    private final int _height;
+    private final int _orientation;
+    private final int _tileSize;
+    private final TileGrid _grid;
+    private final Scheduler _scheduler;
+    private final LruCache<Long, Bitmap> _tiles;
+    private final Map<Long, Single<Bitmap>> _pendingTiles;
+    private volatile boolean _closed;
+
+
+    public TiledPhoto(byte[] jpeg, int orientation) throws IOException {
+        this(BitmapRegionDecoder.newInstance(jpeg, 0, jpeg.length, false),
+            orientation, DEFAULT_TILE_SIZE, DEFAULT_CACHE_SIZE,
+            Schedulers.computation());
+    }
+
+    public TiledPhoto(File jpeg, int orientation) throws IOException {
+        this(BitmapRegionDecoder.newInstance(jpeg.getPath(), false),
+            orientation, DEFAULT_TILE_SIZE, DEFAULT_CACHE_SIZE,
+            Schedulers.computation());
+    }
+
+    public TiledPhoto(BitmapRegionDecoder decoder, int orientation, int tileSize,
+                      int cacheSize, Scheduler scheduler) {
+
+        // fail if sizing is invalid
+        if (tileSize <= 0 || cacheSize <= 0) {
+            throw new IllegalArgumentException(
+                "Tile size and cache size must be positive.");
+        }
+
+        // initialize instance variables
+        _decoder = decoder;
+        _width = decoder.getWidth();
+        _height = decoder.getHeight();
+        _orientation = orientation;
+        _tileSize = tileSize;
+        _grid = new TileGrid(_width, _height, tileSize);
+        _scheduler = scheduler;
+        _pendingTiles = new ConcurrentHashMap<>();
+        _tiles = new LruCache<Long, Bitmap>(cacheSize) {
+            @Override
+            protected int sizeOf(Long key, Bitmap tile) {
+                return tile.getByteCount();
+            }
+        };
+
+        // account cached tiles against the library memory budget
+        MemoryBudget.getInstance().register(this);
+    }
+
+    public int getWidth() {
+        return _width;
+    }
+
+    public int getHeight() {
+        return _height;
+    }
+
+    public int getOrientation() {
+        return _orientation;
+    }
+
+    public int getTileSize() {
+        return _tileSize;
+    }
+
+    public int getLevelCount() {
+        return _grid.getLevelCount();
+    }
+
+    public int getSampleSize(int level) {
+        return TileGrid.getSampleSize(level);
+    }
+
+    public int getLevel(float scale) {
+        return _grid.getLevel(scale);
+    }
+
+    public int getColumnCount(int level) {
+        return _grid.getColumnCount(level);
+    }
+
+    public int getRowCount(int level) {
+        return _grid.getRowCount(level);
+    }
+
+    public Rect getTileBounds(int level, int column, int row) {
+        final int[] bounds = new int[4];
+        _grid.getTileBounds(level, column, row, bounds);
+        return new Rect(bounds[0], bounds[1], bounds[2], bounds[3]);
+    }
+
+    public Bitmap getCachedTile(int level, int column, int row) {
+        return _tiles.get(TileGrid.getTileKey(level, column, row));
+    }
+
+    public Single<Bitmap> getTile(int level, int column, int row) {
+
+        // fail if tile is out of range
+        if (!_grid.isValidTile(level, column, row)) {
+            return Single.error(new IllegalArgumentException(
+                "Tile is out of range: " + level + "/" + column + "/" + row));
+        }
+
+        // decode tile (or reuse cached / pending decode), then warm neighbours
+        return loadTile(level, column, row)
+            .doOnSuccess(tile -> prefetchNeighbours(level, column, row));
+    }
+
+    public void prefetch(int level, int column, int row) {
+
+        // decode tile in the background (errors are only logged)
+        if (_grid.isValidTile(level, column, row)
+            && getCachedTile(level, column, row) == null) {
+            loadTile(level, column, row)
+                .subscribe(
+                    tile -> {},
+                    error -> Log.w(TAG, "unable to prefetch tile: "
+                        + error.getMessage()));
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "TiledPhoto";
+    }
+
+    @Override
+    public long getAllocatedBytes() {
+        return _tiles.size();
+    }
+
+    @Override
+    public void trimMemory(int level) {
+
+        // shrink cached tiles to match memory pressure
+        final int trimmedSize = getTrimmedCacheSize(level, _tiles.maxSize());
+        if (trimmedSize == 0) {
+            _tiles.evictAll();
+        }
+        else if (trimmedSize < _tiles.maxSize()) {
+            _tiles.trimToSize(trimmedSize);
+        }
+    }
+
+    static int getTrimmedCacheSize(int level, int cacheSize) {
+
+        // drop all tiles under heavy pressure (or when backgrounded)
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            return 0;
+        }
+
+        // or halve the cache
+        else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            return cacheSize / 2;
+        }
+
+        // or keep everything
+        return cacheSize;
+    }
+
+    @Override
+    public void close() {
+
+        // release decoder and cached tiles
+        _closed = true;
+        MemoryBudget.getInstance().unregister(this);
+        _tiles.evictAll();
+        _decoder.recycle();
+    }
+
+    private Single<Bitmap> loadTile(int level, int column, int row) {
+
+        // use cached tile
+        final long key = TileGrid.getTileKey(level, column, row);
+        final Bitmap cachedTile = _tiles.get(key);
+        if (cachedTile != null) {
+            return Single.just(cachedTile);
+        }
+
+        // or share pending decode
+        Single<Bitmap> pendingTile = _pendingTiles.get(key);
+        if (pendingTile != null) {
+            return pendingTile;
+        }
+
+        // or decode on the background pool
+        pendingTile = Single.fromCallable(() -> decodeTile(level, column, row))
+            .subscribeOn(_scheduler)
+            .doOnSuccess(tile -> {
+                _tiles.put(key, tile);
+                MemoryBudget.getInstance().enforce();
+            })
+            .doFinally(() -> _pendingTiles.remove(key))
+            .cache();
+        Single<Bitmap> existingTile = _pendingTiles.putIfAbsent(key, pendingTile);
+        if (existingTile != null) {
+            return existingTile;
+        }
+
+        // start decode now (the map entry is only removed once it finishes,
+        // so it can't be left behind by a caller that never subscribes)
+        pendingTile.subscribe(tile -> {}, error -> {});
+        return pendingTile;
+    }
+
+    private Bitmap decodeTile(int level, int column, int row) throws IOException {
+
+        // fail if photo was closed
+        if (_closed) {
+            throw new IOException("TiledPhoto is closed.");
+        }
+
+        // decode region at level sample size
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = getSampleSize(level);
+        Bitmap tile = _decoder.decodeRegion(getTileBounds(level, column, row),
+            options);
+        if (tile == null) {
+            throw new IOException("Unable to decode tile: "
+                + level + "/" + column + "/" + row);
+        }
+        return tile;
+    }
+
+    private void prefetchNeighbours(int level, int column, int row) {
+
+        // warm surrounding tiles at the same level
+        for (int dy = -1; dy <= 1; ++dy) {
+            for (int dx = -1; dx <= 1; ++dx) {
+                if (dx != 0 || dy != 0) {
+                    prefetch(level, column + dx, row + dy);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.nascentdigital.graphics;
+
+
+import java.nio.ByteBuffer;
+
+
+public final class YuvHelper {
+
+    // full-range (JFIF) BT.601 coefficients in 16.16 fixed point
+    private static final int V_TO_R = 91881;
+    private static final int U_TO_G = 22554;
+    private static final int V_TO_G = 46802;
+    private static final int U_TO_B = 116130;
+    private static final int ROUNDING = 1 << 15;
+
+
+    private YuvHelper() {
+    }
+
+    public static void convertRow(ByteBuffer yPlane, int yRowStride,
+                                  ByteBuffer uPlane, ByteBuffer vPlane,
+                                  int uvRowStride, int uvPixelStride,
+                                  int row, int width, int[] argb) {
+
+        // resolve row offsets (chroma is sub-sampled 2x2)
+        final int yOffset = row * yRowStride;
+        final int uvOffset = (row >> 1) * uvRowStride;
+
+        // convert pixels (absolute reads keep buffer positions untouched)
+        for (int x = 0; x < width; ++x) {
+            final int uvIndex = uvOffset + (x >> 1) * uvPixelStride;
+            argb[x] = toArgb(
+                yPlane.get(yOffset + x) & 0xFF,
+                uPlane.get(uvIndex) & 0xFF,
+                vPlane.get(uvIndex) & 0xFF);
+        }
+    }
+
+    public static int toArgb(int y, int u, int v) {
+
+        // convert to RGB
+        final int luma = (y << 16) + ROUNDING;
+        final int cb = u - 128;
+        final int cr = v - 128;
+        final int r = clamp((luma + V_TO_R * cr) >> 16);
+        final int g = clamp((luma - U_TO_G * cb - V_TO_G * cr) >> 16);
+        final int b = clamp((luma + U_TO_B * cb) >> 16);
+
+        // pack opaque pixel
+        return 0xFF000000 | (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int value) {
+        return value < 0
+            ? 0
+            : value > 255 ? 255 : value;
+    }
+}
@@ -0,0 +1,167 @@
+package com.nascentdigital.services;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.Log;
+
+import com.nascentdigital.widget.ContextHelper;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+
+public final class MemoryBudget implements ComponentCallbacks2 {
+
+    private static final String TAG = "nascent/MemoryBudget";
+    private static final MemoryBudget INSTANCE = new MemoryBudget();
+
+    private final List<WeakReference<MemoryConsumer>> _consumers;
+    private final long _limitBytes;
+    private volatile int _trimLevel;
+    private boolean _installed;
+
+
+    private MemoryBudget() {
+
+        // initialize instance variables (library share of the heap)
+        _consumers = new CopyOnWriteArrayList<>();
+        _limitBytes = Runtime.getRuntime().maxMemory() / 4;
+    }
+
+    public static MemoryBudget getInstance() {
+        return INSTANCE;
+    }
+
+    public static MemoryBudget install(Context context) {
+
+        // listen for memory pressure once per process
+        synchronized (INSTANCE) {
+            if (!INSTANCE._installed) {
+                Application application = ContextHelper.getApplication(context);
+                if (application != null) {
+                    application.registerComponentCallbacks(INSTANCE);
+                    INSTANCE._installed = true;
+                }
+                else {
+                    Log.w(TAG, "unable to resolve application for " + context);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    // NOTE: consumers are held weakly, so unclosed ones can still be collected
+    public synchronized void register(MemoryConsumer consumer) {
+        if (!getConsumers().contains(consumer)) {
+            _consumers.add(new WeakReference<>(consumer));
+        }
+    }
+
+    public synchronized void unregister(MemoryConsumer consumer) {
+        for (WeakReference<MemoryConsumer> reference : _consumers) {
+            if (reference.get() == consumer) {
+                _consumers.remove(reference);
+            }
+        }
+    }
+
+    private List<MemoryConsumer> getConsumers() {
+
+        // resolve live consumers (dropping collected ones)
+        List<MemoryConsumer> consumers = new ArrayList<>(_consumers.size());
+        for (WeakReference<MemoryConsumer> reference : _consumers) {
+            MemoryConsumer consumer = reference.get();
+            if (consumer != null) {
+                consumers.add(consumer);
+            }
+            else {
+                _consumers.remove(reference);
+            }
+        }
+        return consumers;
+    }
+
+    public long getLimitBytes() {
+        return _limitBytes;
+    }
+
+    public long getUsedBytes() {
+
+        // sum bytes held by all consumers
+        long usedBytes = 0;
+        for (MemoryConsumer consumer : getConsumers()) {
+            usedBytes += consumer.getAllocatedBytes();
+        }
+        return usedBytes;
+    }
+
+    public boolean isOverBudget() {
+        return getUsedBytes() > _limitBytes;
+    }
+
+    public boolean enforce() {
+
+        // skip if usage fits the budget
+        if (!isOverBudget()) {
+            return false;
+        }
+
+        // ask consumers to shrink until usage fits again
+        for (MemoryConsumer consumer : getConsumers()) {
+            consumer.trimMemory(TRIM_MEMORY_RUNNING_LOW);
+            if (!isOverBudget()) {
+                break;
+            }
+        }
+
+        Log.d(TAG, "enforced budget: " + getUsedBytes() + " / " + _limitBytes
+            + " bytes " + getUsage());
+        return true;
+    }
+
+    public int getTrimLevel() {
+        return _trimLevel;
+    }
+
+    public Map<String, Long> getUsage() {
+
+        // report bytes per consumer
+        Map<String, Long> usage = new LinkedHashMap<>();
+        for (MemoryConsumer consumer : getConsumers()) {
+            Long bytes = usage.get(consumer.getName());
+            usage.put(consumer.getName(), consumer.getAllocatedBytes()
+                + (bytes == null ? 0 : bytes));
+        }
+        return usage;
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+
+        // track most recent pressure level
+        _trimLevel = level;
+
+        // ask consumers to shrink
+        for (MemoryConsumer consumer : getConsumers()) {
+            consumer.trimMemory(level);
+        }
+
+        Log.d(TAG, "trimmed memory (level " + level + "): " + getUsedBytes()
+            + " / " + _limitBytes + " bytes " + getUsage());
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration configuration) {
+    }
+}
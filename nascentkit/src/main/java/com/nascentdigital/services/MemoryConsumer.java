@@ -0,0 +1,12 @@
+package com.nascentdigital.services;
+
+
+public interface MemoryConsumer {
+
+    String getName();
+
+    long getAllocatedBytes();
+
+    // NOTE: level is a ComponentCallbacks2.TRIM_MEMORY_* constant
+    void trimMemory(int level);
+}
@@ -1,65 +1,202 @@
 package com.nascentdigital.services;
 
 import android.app.Activity;
+import android.app.Application;
 import android.content.pm.PackageInfo;
 import android.content.pm.PackageManager;
+import android.os.Bundle;
 import android.support.annotation.NonNull;
 import android.support.v4.app.ActivityCompat;
 import android.support.v4.content.ContextCompat;
 import android.util.Log;
 
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.Set;
+import java.util.WeakHashMap;
+
+import io.reactivex.Observable;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.subjects.BehaviorSubject;
 
 
 public class Permissions {
 
     private static final String TAG = "nascent/Permissions";
-    private static final int PERMISSION_CODE = 1;
+    private static final int MIN_REQUEST_CODE = 0x100;
+    private static final int MAX_REQUEST_CODE = 0xFFFF;
+    private static final PermissionState[] STATES = PermissionState.values();
+    private static final Map<Activity, RequestDispatcher> DISPATCHERS
+        = new WeakHashMap<>();
+
+    private static String[] _requestedPermissions;
+    private static int _nextRequestCode = MIN_REQUEST_CODE;
+    private static boolean _lifecycleInstalled;
 
     private final Activity _activity;
+    private final String[] _permissionIds;
+    private final BehaviorSubject<Map<String, PermissionState>> _permissionStates$;
+    private byte[] _snapshot;
+    private Map<String, PermissionState> _permissionStates;
 
 
     public Permissions(@NonNull Activity activity) {
 
         // initialize instance variables
         _activity = activity;
+        _permissionIds = getRequestedPermissions(activity);
+        _snapshot = new byte[_permissionIds.length];
+        _permissionStates = Collections.emptyMap();
+        _permissionStates$ = BehaviorSubject.create();
+
+        // capture initial snapshot
+        refresh();
     }
 
     public Map<String, PermissionState> getPermissionStates() {
+        return _permissionStates;
+    }
 
-        // fetch permissions
+    public Observable<Map<String, PermissionState>> observePermissionStates() {
+        return _permissionStates$;
+    }
+
+    public PermissionState getPermissionState(String permissionId) {
+
+        // use snapshot for requested permissions
+        PermissionState state = _permissionStates.get(permissionId);
+        if (state != null) {
+            return state;
+        }
+
+        // or query permission directly
+        return queryPermissionState(permissionId);
+    }
+
+    public void refresh() {
+
+        // build snapshot of current states
+        byte[] snapshot = new byte[_permissionIds.length];
+        for (int i = 0; i < _permissionIds.length; ++i) {
+            snapshot[i] = (byte) queryPermissionState(_permissionIds[i]).ordinal();
+        }
+
+        // skip if nothing has changed
+        if (Arrays.equals(snapshot, _snapshot) && _permissionStates$.hasValue()) {
+            return;
+        }
+
+        // publish updated states
         Map<String, PermissionState> permissionStates = new HashMap<>();
-        try {
+        for (int i = 0; i < _permissionIds.length; ++i) {
+            permissionStates.put(_permissionIds[i], STATES[snapshot[i]]);
+        }
+        _snapshot = snapshot;
+        _permissionStates = Collections.unmodifiableMap(permissionStates);
 
-            // get package information
-            PackageManager packageManager = _activity.getPackageManager();
-            PackageInfo packageInfo = packageManager.getPackageInfo(_activity.getPackageName(),
-                    PackageManager.GET_PERMISSIONS);
+        Log.v(TAG, "updated permission states: " + _permissionStates);
 
-            // fetch all permission states
-            if (packageInfo.requestedPermissions != null) {
-                for (String permissionId : packageInfo.requestedPermissions) {
-                    permissionStates.put(permissionId, getPermissionState(permissionId));
+        _permissionStates$.onNext(_permissionStates);
+    }
+
+    public Single<Map<String, PermissionState>> request(String ...permissionIds) {
+        return request(Arrays.asList(permissionIds));
+    }
+
+    public Single<Map<String, PermissionState>> request(Collection<String> permissionIds) {
+
+        // copy permissions (caller may mutate collection before subscription)
+        final List<String> requestedIds = new ArrayList<>(permissionIds);
+        return Single.<Map<String, PermissionState>>create(emitter -> {
+
+            // use all permissions that aren't granted if none are specified
+            Collection<String> ids = requestedIds;
+            if (ids.isEmpty()) {
+                ids = _permissionStates.keySet();
+            }
+
+            // resolve granted permissions from snapshot (no dialog needed)
+            Map<String, PermissionState> states = new HashMap<>();
+            Set<String> missingIds = new LinkedHashSet<>();
+            for (String permissionId : ids) {
+                PermissionState state = getPermissionState(permissionId);
+                if (state == PermissionState.GRANTED) {
+                    states.put(permissionId, state);
+                }
+                else {
+                    missingIds.add(permissionId);
                 }
             }
-        }
 
-        // handle error
-        catch (Exception e) {
-            Log.e(TAG, "Unable to fetch permissions: " + e.getMessage());
+            // complete immediately if everything is granted
+            if (missingIds.isEmpty()) {
+                emitter.onSuccess(Collections.unmodifiableMap(states));
+                return;
+            }
+
+            // or queue for the next system dialog
+            getDispatcher(_activity)
+                .enqueue(new PermissionRequest(missingIds, states, emitter));
+        })
+            .subscribeOn(AndroidSchedulers.mainThread());
+    }
+
+    public void onRequestPermissionsResult(int requestCode, String[] permissionIds,
+                                           int[] results) {
+
+        // refresh snapshot (rationale state is only known after the dialog)
+        refresh();
+
+        // complete requests waiting on this dialog
+        getDispatcher(_activity)
+            .onResult(requestCode, parsePermissionResults(permissionIds, results));
+    }
+
+    public void requestPermissions(String ...permissionIds) {
+        this.requestPermissions(Arrays.asList(permissionIds));
+    }
+
+    public void requestPermissions(Collection<String> permissionIds) {
+
+        // request permissions, observing results through the snapshot
+        request(permissionIds)
+            .subscribe(
+                states -> Log.v(TAG, "permission request completed: " + states),
+                error -> Log.e(TAG, "Unable to request permissions: "
+                    + error.getMessage()));
+    }
+
+    public Map<String, PermissionState> parsePermissionResults(String[] permissionIds, int[] results) {
+
+        // parse permissions (results are empty if the dialog was interrupted)
+        Map<String, PermissionState> permissionStates = new HashMap<>();
+        for (int i = 0; i < permissionIds.length; ++i) {
+            PermissionState state;
+            if (i >= results.length) {
+                state = PermissionState.NOT_GRANTED;
+            }
+            else {
+                state = results[i] == PackageManager.PERMISSION_GRANTED
+                    ? PermissionState.GRANTED
+                    : PermissionState.DENIED;
+            }
+            permissionStates.put(permissionIds[i], state);
         }
 
-        // return permission
+        // return permissions
         return permissionStates;
     }
 
-    public PermissionState getPermissionState(String permissionId) {
+    private PermissionState queryPermissionState(String permissionId) {
 
         // determine permission state
         PermissionState state;
@@ -78,48 +215,265 @@ public class Permissions {
         return state;
     }
 
-    public void requestPermissions(String ...permissionIds) {
-        this.requestPermissions(Arrays.asList(permissionIds));
+    private static synchronized RequestDispatcher getDispatcher(Activity activity) {
+
+        // drop dispatchers when their activity is destroyed (once per process)
+        if (!_lifecycleInstalled) {
+            activity.getApplication()
+                .registerActivityLifecycleCallbacks(new DispatcherReleaser());
+            _lifecycleInstalled = true;
+        }
+
+        // share dispatcher across all services bound to the activity
+        RequestDispatcher dispatcher = DISPATCHERS.get(activity);
+        if (dispatcher == null) {
+            dispatcher = new RequestDispatcher(activity);
+            DISPATCHERS.put(activity, dispatcher);
+        }
+        return dispatcher;
     }
 
-    public void requestPermissions(Collection<String> permissionIds) {
+    private static synchronized RequestDispatcher removeDispatcher(Activity activity) {
+        return DISPATCHERS.remove(activity);
+    }
+
+    private static synchronized int nextRequestCode() {
 
-        // fetch all permissions that aren't granted if no permissions are specified
-        if (permissionIds.size() == 0) {
+        // cycle through codes reserved for permission requests
+        int requestCode = _nextRequestCode;
+        _nextRequestCode = requestCode == MAX_REQUEST_CODE
+            ? MIN_REQUEST_CODE
+            : requestCode + 1;
+        return requestCode;
+    }
+
+    private static synchronized String[] getRequestedPermissions(Activity activity) {
+
+        // skip if manifest permissions are already known (fixed per process)
+        if (_requestedPermissions != null) {
+            return _requestedPermissions;
+        }
+
+        // fetch permissions
+        String[] requestedPermissions = new String[0];
+        try {
+
+            // get package information
+            PackageManager packageManager = activity.getPackageManager();
+            PackageInfo packageInfo = packageManager.getPackageInfo(activity.getPackageName(),
+                    PackageManager.GET_PERMISSIONS);
 
-            // get all permissions that haven't been granted
-            ArrayList<String> permissions = new ArrayList<>();
-            for (Entry<String, PermissionState> entry : getPermissionStates().entrySet()) {
-                if (entry.getValue() != PermissionState.GRANTED) {
-                    permissions.add(entry.getKey());
+            // capture requested permissions
+            if (packageInfo.requestedPermissions != null) {
+                requestedPermissions = packageInfo.requestedPermissions;
+            }
+        }
+
+        // handle error (retried by the next instance)
+        catch (Exception e) {
+            Log.e(TAG, "Unable to fetch permissions: " + e.getMessage());
+            return requestedPermissions;
+        }
+
+        // cache and return permissions
+        _requestedPermissions = requestedPermissions;
+        return requestedPermissions;
+    }
+
+
+    private static final class PermissionRequest {
+
+        final Set<String> permissionIds;
+        final Map<String, PermissionState> states;
+        final SingleEmitter<Map<String, PermissionState>> emitter;
+
+
+        PermissionRequest(Set<String> permissionIds,
+                          Map<String, PermissionState> states,
+                          SingleEmitter<Map<String, PermissionState>> emitter) {
+            this.permissionIds = permissionIds;
+            this.states = states;
+            this.emitter = emitter;
+        }
+
+        void complete(Map<String, PermissionState> results) {
+
+            // merge dialog results with already granted permissions
+            for (String permissionId : permissionIds) {
+                PermissionState state = results.get(permissionId);
+                states.put(permissionId,
+                    state == null ? PermissionState.NOT_GRANTED : state);
+            }
+
+            // emit (ignored if subscriber has gone away)
+            emitter.onSuccess(Collections.unmodifiableMap(states));
+        }
+
+        void fail(Throwable error) {
+
+            // raise error (dropped if subscriber has gone away)
+            emitter.tryOnError(error);
+        }
+    }
+
+    // NOTE: all dispatcher methods run on the main thread
+    private static final class RequestDispatcher {
+
+        private final WeakReference<Activity> _activity;
+        private final List<PermissionRequest> _pendingRequests;
+        private final List<PermissionRequest> _activeRequests;
+        private final Set<String> _activePermissionIds;
+        private int _activeRequestCode;
+        private boolean _dispatchScheduled;
+
+
+        RequestDispatcher(Activity activity) {
+
+            // initialize instance variables (weak, the activity is the map key)
+            _activity = new WeakReference<>(activity);
+            _pendingRequests = new ArrayList<>();
+            _activeRequests = new ArrayList<>();
+            _activePermissionIds = new LinkedHashSet<>();
+        }
+
+        void enqueue(PermissionRequest request) {
+
+            // join active dialog if it already covers the permissions
+            if (!_activeRequests.isEmpty()
+                && _activePermissionIds.containsAll(request.permissionIds)) {
+                _activeRequests.add(request);
+                return;
+            }
+
+            // or wait for the next dialog
+            _pendingRequests.add(request);
+
+            // coalesce requests made in the same main loop pass
+            if (!_dispatchScheduled && _activeRequests.isEmpty()) {
+                _dispatchScheduled = true;
+                AndroidSchedulers.mainThread().scheduleDirect(this::dispatch);
+            }
+        }
+
+        void onResult(int requestCode, Map<String, PermissionState> results) {
+
+            // skip if result belongs to another request
+            if (_activeRequests.isEmpty() || requestCode != _activeRequestCode) {
+                return;
+            }
+
+            Log.d(TAG, "received permission results (" + requestCode + "): "
+                + results);
+
+            // complete waiting requests
+            List<PermissionRequest> requests = new ArrayList<>(_activeRequests);
+            _activeRequests.clear();
+            _activePermissionIds.clear();
+            for (PermissionRequest request : requests) {
+                request.complete(results);
+            }
+
+            // show next dialog
+            dispatch();
+        }
+
+        private void dispatch() {
+
+            // skip if a dialog is already showing or nothing is waiting
+            _dispatchScheduled = false;
+            if (!_activeRequests.isEmpty() || _pendingRequests.isEmpty()) {
+                return;
+            }
+
+            // merge pending requests into a single dialog
+            for (PermissionRequest request : _pendingRequests) {
+                if (!request.emitter.isDisposed()) {
+                    _activeRequests.add(request);
+                    _activePermissionIds.addAll(request.permissionIds);
                 }
             }
+            _pendingRequests.clear();
+
+            // skip if every request was abandoned
+            if (_activeRequests.isEmpty()) {
+                return;
+            }
+
+            // fail requests if the activity has already gone away
+            final Activity activity = _activity.get();
+            if (activity == null || activity.isFinishing()) {
+                cancel();
+                return;
+            }
+
+            // request permissions under a unique code
+            _activeRequestCode = nextRequestCode();
+            String[] permissionIds = _activePermissionIds
+                .toArray(new String[_activePermissionIds.size()]);
+
+            Log.d(TAG, "requesting permissions (" + _activeRequestCode + "): "
+                + Arrays.toString(permissionIds));
 
-            // update permissions
-            permissionIds = permissions;
+            ActivityCompat.requestPermissions(activity, permissionIds,
+                _activeRequestCode);
         }
 
-        // request permissions if there are any to ask for
-        int permissionCount = permissionIds.size();
-        if (permissionCount > 0) {
-            String[] permissions = new String[permissionCount];
-            ActivityCompat.requestPermissions(_activity,
-                permissionIds.toArray(permissions), PERMISSION_CODE);
+        void cancel() {
+
+            // collect waiting requests
+            List<PermissionRequest> requests = new ArrayList<>(_activeRequests);
+            requests.addAll(_pendingRequests);
+            _activeRequests.clear();
+            _activePermissionIds.clear();
+            _pendingRequests.clear();
+
+            Log.d(TAG, "cancelling " + requests.size()
+                + " permission request(s) for destroyed activity");
+
+            // fail them (results for the dialog can no longer be delivered)
+            IllegalStateException error = new IllegalStateException(
+                "Activity was destroyed before permissions were resolved.");
+            for (PermissionRequest request : requests) {
+                request.fail(error);
+            }
         }
     }
 
-    public Map<String, PermissionState> parsePermissionResults(String[] permissionIds, int[] results) {
+    private static final class DispatcherReleaser
+        implements Application.ActivityLifecycleCallbacks {
 
-        // parse permissions
-        Map<String, PermissionState> permissionStates = new HashMap<>();
-        for (int i = 0; i < permissionIds.length; ++i) {
-            PermissionState state = results[i] == PERMISSION_CODE
-                    ? PermissionState.GRANTED
-                    : PermissionState.DENIED;
-            permissionStates.put(permissionIds[i], state);
+        @Override
+        public void onActivityDestroyed(Activity activity) {
+
+            // fail requests that were waiting on the activity
+            RequestDispatcher dispatcher = removeDispatcher(activity);
+            if (dispatcher != null) {
+                dispatcher.cancel();
+            }
         }
 
-        // return permissions
-        return permissionStates;
+        @Override
+        public void onActivityCreated(Activity activity, Bundle savedInstanceState) {
+        }
+
+        @Override
+        public void onActivityStarted(Activity activity) {
+        }
+
+        @Override
+        public void onActivityResumed(Activity activity) {
+        }
+
+        @Override
+        public void onActivityPaused(Activity activity) {
+        }
+
+        @Override
+        public void onActivityStopped(Activity activity) {
+        }
+
+        @Override
+        public void onActivitySaveInstanceState(Activity activity, Bundle outState) {
+        }
     }
 }
@@ -0,0 +1,144 @@
+package com.nascentdigital.util;
+
+import android.util.Log;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReference;
+
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.Subject;
+
+
+public final class StateMachine<S extends Enum<S>> {
+
+    private static final String TAG = "nascent/StateMachine";
+
+    private final String _name;
+    private final S _errorState;
+    private final Map<S, Set<S>> _transitions;
+    private final AtomicReference<Snapshot<S>> _snapshot;
+    private final Subject<S> _state$;
+    private Scheduler _publishScheduler;
+
+
+    public StateMachine(String name, Class<S> stateType, S initialState, S errorState) {
+
+        // initialize instance variables
+        _name = name;
+        _errorState = errorState;
+        _transitions = new EnumMap<>(stateType);
+        for (S state : stateType.getEnumConstants()) {
+            _transitions.put(state, EnumSet.noneOf(stateType));
+        }
+        _snapshot = new AtomicReference<>(new Snapshot<>(initialState, null));
+        _state$ = BehaviorSubject.createDefault(initialState).toSerialized();
+    }
+
+    @SafeVarargs
+    public final StateMachine<S> allow(S from, S... to) {
+
+        // register transitions (call before the machine is shared)
+        for (S state : to) {
+            _transitions.get(from).add(state);
+        }
+        return this;
+    }
+
+    // NOTE: emits changes on the scheduler instead of the updating thread
+    public StateMachine<S> publishOn(Scheduler scheduler) {
+
+        // set scheduler (call before the machine is shared)
+        _publishScheduler = scheduler;
+        return this;
+    }
+
+    public S getState() {
+        return _snapshot.get().state;
+    }
+
+    public Throwable getError() {
+        return _snapshot.get().error;
+    }
+
+    public boolean canTransition(S state) {
+        return canTransition(_snapshot.get().state, state);
+    }
+
+    public boolean transition(S state) {
+
+        // apply transition atomically
+        while (true) {
+
+            // skip if state is unchanged
+            Snapshot<S> current = _snapshot.get();
+            if (current.state == state) {
+                return true;
+            }
+
+            // ignore invalid transitions
+            if (!canTransition(current.state, state)) {
+                Log.w(TAG, _name + " ignored invalid transition "
+                    + current.state + " -> " + state);
+                return false;
+            }
+
+            // update state (retry if another thread won the race)
+            if (_snapshot.compareAndSet(current, new Snapshot<>(state, null))) {
+                publish();
+                return true;
+            }
+        }
+    }
+
+    public void fail(Throwable error) {
+
+        // move to error state with payload (allowed from any state)
+        _snapshot.set(new Snapshot<>(_errorState, error));
+        publish();
+    }
+
+    public Observable<S> observe() {
+        return _state$.distinctUntilChanged();
+    }
+
+    private boolean canTransition(S from, S to) {
+        return to == _errorState || _transitions.get(from).contains(to);
+    }
+
+    private void publish() {
+
+        // hop to the publishing scheduler (if any)
+        if (_publishScheduler != null) {
+            _publishScheduler.scheduleDirect(this::emit);
+        }
+
+        // or emit on the updating thread
+        else {
+            emit();
+        }
+    }
+
+    private void emit() {
+
+        // emit latest state (keeps emissions ordered under concurrent updates)
+        _state$.onNext(_snapshot.get().state);
+    }
+
+
+    private static final class Snapshot<S> {
+
+        final S state;
+        final Throwable error;
+
+
+        Snapshot(S state, Throwable error) {
+            this.state = state;
+            this.error = error;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.nascentdigital.util;
+
+
+public enum TraceEvent {
+
+    // camera lifecycle (arg0: camera id hash)
+    CAMERA_OPEN,
+    CAMERA_OPENED,
+    CAMERA_DISCONNECTED,
+    CAMERA_ERROR,
+    SESSION_CONFIGURED,
+
+    // output planning (args: width, height)
+    PREPARE_OUTPUTS,
+    BIND_OUTPUTS,
+    PHOTO_OUTPUT,
+    PREVIEW_OUTPUT,
+
+    // preview view (args: width, height)
+    PREVIEW_AVAILABLE,
+    PREVIEW_SIZE,
+    PREVIEW_MEASURE,
+    PREVIEW_ASPECT,
+    PREVIEW_TRANSFORM,
+
+    // photo capture (args: phase / elapsed ms)
+    PHOTO_START,
+    PHOTO_CAPTURE,
+    PHOTO_IMAGE,
+    PHOTO_DELIVER,
+
+    // preview snapshots (args: width, height / elapsed ms)
+    SNAPSHOT_OUTPUT,
+    SNAPSHOT_START,
+    SNAPSHOT_DELIVER,
+
+    // state changes (arg0: state ordinal)
+    FEED_STATE,
+    VIEW_STATE;
+
+    // section names are built once (Trace.beginSection takes a String)
+    final String sectionName = "nascent:" + name();
+}
@@ -0,0 +1,116 @@
+package com.nascentdigital.util;
+
+import android.os.SystemClock;
+import android.os.Trace;
+import android.util.Log;
+
+import com.nascentdigital.nascentkit.BuildConfig;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+// NOTE: calls compile down to no-ops when TRACE_ENABLED is false; the ring
+// buffer is lock-free, so a dump taken while writers are active may contain
+// a partially written entry
+public final class TraceLog {
+
+    public static final boolean ENABLED = BuildConfig.TRACE_ENABLED;
+
+    private static final String TAG = "nascent/TraceLog";
+    private static final int CAPACITY = 1024;
+    private static final int MASK = CAPACITY - 1;
+    private static final TraceEvent[] EVENTS = TraceEvent.values();
+
+    private static final AtomicLong _cursor = new AtomicLong();
+    private static final long[] _times = new long[ENABLED ? CAPACITY : 0];
+    private static final long[] _threads = new long[ENABLED ? CAPACITY : 0];
+    private static final int[] _events = new int[ENABLED ? CAPACITY : 0];
+    private static final int[] _args0 = new int[ENABLED ? CAPACITY : 0];
+    private static final int[] _args1 = new int[ENABLED ? CAPACITY : 0];
+
+
+    private TraceLog() {
+    }
+
+    public static void begin(TraceEvent event) {
+        if (ENABLED) {
+            Trace.beginSection(event.sectionName);
+        }
+    }
+
+    public static void end() {
+        if (ENABLED) {
+            Trace.endSection();
+        }
+    }
+
+    public static void record(TraceEvent event) {
+        record(event, 0, 0);
+    }
+
+    public static void record(TraceEvent event, int arg0) {
+        record(event, arg0, 0);
+    }
+
+    public static void record(TraceEvent event, int arg0, int arg1) {
+
+        // skip if tracing is compiled out
+        if (!ENABLED) {
+            return;
+        }
+
+        // claim next slot (overwrites oldest entry)
+        final int index = (int) (_cursor.getAndIncrement() & MASK);
+        _times[index] = SystemClock.elapsedRealtimeNanos();
+        _threads[index] = Thread.currentThread().getId();
+        _events[index] = event.ordinal();
+        _args0[index] = arg0;
+        _args1[index] = arg1;
+    }
+
+    public static void clear() {
+        if (ENABLED) {
+            _cursor.set(0);
+        }
+    }
+
+    public static void dump(PrintWriter writer) {
+
+        // skip if tracing is compiled out
+        if (!ENABLED) {
+            writer.println("tracing disabled");
+            return;
+        }
+
+        // write entries from oldest to newest
+        final long end = _cursor.get();
+        final long start = Math.max(0, end - CAPACITY);
+        for (long i = start; i < end; ++i) {
+            final int index = (int) (i & MASK);
+            writer.print(_times[index]);
+            writer.print(" [");
+            writer.print(_threads[index]);
+            writer.print("] ");
+            writer.print(EVENTS[_events[index]]);
+            writer.print(' ');
+            writer.print(_args0[index]);
+            writer.print(' ');
+            writer.println(_args1[index]);
+        }
+        writer.flush();
+    }
+
+    public static String dump() {
+        StringWriter buffer = new StringWriter();
+        dump(new PrintWriter(buffer));
+        return buffer.toString();
+    }
+
+    public static void dumpToLog() {
+        for (String line : dump().split("\n")) {
+            Log.i(TAG, line);
+        }
+    }
+}
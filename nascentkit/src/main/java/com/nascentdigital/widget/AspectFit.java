@@ -0,0 +1,36 @@
+package com.nascentdigital.widget;
+
+import com.nascentdigital.util.TraceEvent;
+import com.nascentdigital.util.TraceLog;
+
+
+final class AspectFit {
+
+    private AspectFit() {
+    }
+
+    static void measure(int width, int height,
+                        int aspectWidth, int aspectHeight, int[] size) {
+
+        // use width / height directly if either aspect size is unspecified
+        if (aspectWidth == 0 || aspectHeight == 0) {
+            size[0] = width;
+            size[1] = height;
+        }
+
+        // fit to width (scale to aspect-fit)
+        else if (width < height * aspectWidth / aspectHeight) {
+            size[0] = width;
+            size[1] = width * aspectHeight / aspectWidth;
+        }
+
+        // or fit to height (scale to aspect-fit)
+        else {
+            size[0] = height * aspectWidth / aspectHeight;
+            size[1] = height;
+        }
+
+        // record fitted size
+        TraceLog.record(TraceEvent.PREVIEW_MEASURE, size[0], size[1]);
+    }
+}
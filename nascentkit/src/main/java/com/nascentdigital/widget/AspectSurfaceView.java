@@ -0,0 +1,200 @@
+package com.nascentdigital.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.util.AttributeSet;
+import android.util.Log;
+import android.util.Size;
+import android.view.Surface;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.View;
+
+import com.nascentdigital.util.TraceEvent;
+import com.nascentdigital.util.TraceLog;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.android.schedulers.AndroidSchedulers;
+import io.reactivex.subjects.BehaviorSubject;
+
+
+public class AspectSurfaceView extends SurfaceView
+    implements PreviewBackend, SurfaceHolder.Callback {
+
+    private static final String TAG = "nascent/AspectSurface";
+
+    private final BehaviorSubject<Boolean> _available$;
+    private final BehaviorSubject<Size> _size$;
+    private final BehaviorSubject<Size> _bufferSize$;
+    private final int[] _measuredSize;
+    private int _aspectWidth = 0;
+    private int _aspectHeight = 0;
+    private boolean _available;
+
+
+    public AspectSurfaceView(Context context) {
+        this(context, null);
+    }
+
+    public AspectSurfaceView(Context context, AttributeSet attributes) {
+        this(context, attributes, 0);
+    }
+
+    public AspectSurfaceView(Context context, AttributeSet attributes, int style) {
+
+        // call base constructor
+        super(context, attributes, style);
+
+        // initialize instance variables
+        _available$ = BehaviorSubject.createDefault(false);
+        _size$ = BehaviorSubject.create();
+        _bufferSize$ = BehaviorSubject.create();
+        _measuredSize = new int[2];
+
+        // observe underlying surface events
+        getHolder().addCallback(this);
+    }
+
+    @Override
+    public View getView() {
+        return this;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        return _available;
+    }
+
+    @Override
+    public Observable<Boolean> observeAvailable() {
+        return _available$.distinctUntilChanged();
+    }
+
+    @Override
+    public Size getSize() {
+        return new Size(getWidth(), getHeight());
+    }
+
+    @Override
+    public Observable<Size> observeSize() {
+        return _size$.distinctUntilChanged();
+    }
+
+    @Override
+    public void setAspectRatio(int width, int height) {
+
+        // verify aspect ratio
+        if (width < 0 || height < 0) {
+            throw new IllegalArgumentException(
+                "Aspect ratio width / height cannot be negative.");
+        }
+
+        TraceLog.record(TraceEvent.PREVIEW_ASPECT, width, height);
+
+        // capture ratio
+        _aspectWidth = width;
+        _aspectHeight = height;
+
+        // force layout
+        requestLayout();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+
+        // call base implementation
+        super.onMeasure(widthMeasureSpec, heightMeasureSpec);
+
+        // resolve actual width / height
+        final int width = MeasureSpec.getSize(widthMeasureSpec);
+        final int height = MeasureSpec.getSize(heightMeasureSpec);
+
+        // scale to aspect-fit
+        AspectFit.measure(width, height, _aspectWidth, _aspectHeight,
+            _measuredSize);
+        setMeasuredDimension(_measuredSize[0], _measuredSize[1]);
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+
+        // call base implementation
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+
+        // raise event (surface size is the buffer size, not the view size)
+        if (_available) {
+            _size$.onNext(new Size(width, height));
+        }
+    }
+
+    @Override
+    public Class<?> getSurfaceClass() {
+        return SurfaceHolder.class;
+    }
+
+    @Override
+    public Completable applyBufferSize(int width, int height) {
+        return Completable.defer(() -> {
+
+            // size buffers to camera output (compositor scales to the view)
+            getHolder().setFixedSize(width, height);
+
+            // wait for the surface to pick up the size (applied asynchronously)
+            return _bufferSize$
+                .filter(size -> size.getWidth() == width
+                    && size.getHeight() == height)
+                .firstOrError()
+                .ignoreElement();
+        })
+            .subscribeOn(AndroidSchedulers.mainThread());
+    }
+
+    @Override
+    public Surface getPreviewSurface() {
+
+        // skip if surface isn't available
+        return _available ? getHolder().getSurface() : null;
+    }
+
+    // NOTE: the compositor rotates camera buffers for SurfaceView targets
+    @Override
+    public boolean supportsTransform() {
+        return false;
+    }
+
+    @Override
+    public void setTransform(Matrix transform) {
+        Log.w(TAG, "ignoring preview transform (not supported by SurfaceView)");
+    }
+
+    @Override
+    public Bitmap getBitmap() {
+        return null;
+    }
+
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+
+        // raise events
+        _available = true;
+        _available$.onNext(true);
+        _size$.onNext(new Size(getWidth(), getHeight()));
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+
+        // track buffer size
+        _bufferSize$.onNext(new Size(width, height));
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+
+        // raise event
+        _available = false;
+        _available$.onNext(false);
+    }
+}
@@ -3,24 +3,35 @@ package com.nascentdigital.widget;
 import android.content.Context;
 import android.graphics.SurfaceTexture;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.util.Size;
+import android.view.Surface;
 import android.view.TextureView;
+import android.view.View;
 
+import com.nascentdigital.util.TraceEvent;
+import com.nascentdigital.util.TraceLog;
+
+import io.reactivex.Completable;
 import io.reactivex.Observable;
 import io.reactivex.subjects.BehaviorSubject;
 
 
 public class AspectTextureView extends TextureView
-    implements TextureView.SurfaceTextureListener {
+    implements PreviewBackend, TextureView.SurfaceTextureListener {
 
     private static final String TAG = "nascent/AspectTexture";
 
     private final BehaviorSubject<Boolean> _available$;
     private final BehaviorSubject<Size> _size$;
 
+    private final int[] _measuredSize;
     private int _aspectWidth = 0;
     private int _aspectHeight = 0;
+    private volatile int _bufferWidth = 0;
+    private volatile int _bufferHeight = 0;
+    private final Object _surfaceLock = new Object();
+    private SurfaceTexture _surfaceTexture;
+    private Surface _surface;
 
 
     public AspectTextureView(Context context) {
@@ -39,23 +50,33 @@ public class AspectTextureView extends TextureView
         // initialize instance variables
         _available$ = BehaviorSubject.createDefault(false);
         _size$ = BehaviorSubject.create();
+        _measuredSize = new int[2];
 
         // observe underlying texture events
         setSurfaceTextureListener(this);
     }
 
+    @Override
+    public View getView() {
+        return this;
+    }
+
+    @Override
     public Observable<Boolean> observeAvailable() {
         return _available$.distinctUntilChanged();
     }
 
+    @Override
     public Size getSize() {
         return new Size(getWidth(), getHeight());
     }
 
+    @Override
     public Observable<Size> observeSize() {
         return _size$.distinctUntilChanged();
     }
 
+    @Override
     public void setAspectRatio(int width, int height) {
 
         // verify aspect ratio
@@ -64,7 +85,7 @@ public class AspectTextureView extends TextureView
                 "Aspect ratio width / height cannot be negative.");
         }
 
-        Log.d(TAG, "updated aspect ratio (" + width + ", " + height + ")");
+        TraceLog.record(TraceEvent.PREVIEW_ASPECT, width, height);
 
         // capture ratio
         _aspectWidth = width;
@@ -84,30 +105,69 @@ public class AspectTextureView extends TextureView
         final int width = MeasureSpec.getSize(widthMeasureSpec);
         final int height = MeasureSpec.getSize(heightMeasureSpec);
 
-        // use width / height directly if either aspect size is unspecified
-        if (_aspectWidth == 0 || _aspectHeight == 0) {
+        // scale to aspect-fit
+        AspectFit.measure(width, height, _aspectWidth, _aspectHeight,
+            _measuredSize);
+        setMeasuredDimension(_measuredSize[0], _measuredSize[1]);
+    }
 
-            Log.v(TAG, "using full width / height");
+    @Override
+    public Class<?> getSurfaceClass() {
+        return SurfaceTexture.class;
+    }
 
-            setMeasuredDimension(width, height);
-        }
+    @Override
+    public Completable applyBufferSize(int width, int height) {
+
+        // capture buffer size (applied to the texture when the surface is
+        // requested, which is safe from any thread)
+        return Completable.fromAction(() -> {
+            _bufferWidth = width;
+            _bufferHeight = height;
+        });
+    }
 
-        // fit to width (scale to aspect-fit)
-        else if (width < height * _aspectWidth / _aspectHeight) {
+    @Override
+    public Surface getPreviewSurface() {
 
-            final int adjustedHeight = width * _aspectHeight / _aspectWidth;
-            setMeasuredDimension(width, adjustedHeight);
+        // skip if texture isn't available
+        SurfaceTexture surfaceTexture = getSurfaceTexture();
+        if (surfaceTexture == null) {
+            return null;
+        }
 
-            Log.v(TAG, "fitting width -> ("  + width + ", " + adjustedHeight + ")");
+        // apply buffer size to current texture
+        if (_bufferWidth > 0 && _bufferHeight > 0) {
+            surfaceTexture.setDefaultBufferSize(_bufferWidth, _bufferHeight);
         }
 
-        // or fit to height (scale to aspect-fit)
-        else {
+        // create surface (reused while the texture is unchanged); guarded, as
+        // the camera thread creates it and the main thread releases it
+        synchronized (_surfaceLock) {
+            if (_surface == null || _surfaceTexture != surfaceTexture
+                || !_surface.isValid()) {
+                releaseSurface();
+                _surfaceTexture = surfaceTexture;
+                _surface = new Surface(surfaceTexture);
+            }
+            return _surface;
+        }
+    }
 
-            final int adjustedWidth = height * _aspectWidth / _aspectHeight;
-            setMeasuredDimension(adjustedWidth, height);
+    @Override
+    public boolean supportsTransform() {
+        return true;
+    }
 
-            Log.v(TAG, "fitting height -> ("  + adjustedWidth + ", " + height + ")");
+    private void releaseSurface() {
+
+        // release surface created for the texture
+        synchronized (_surfaceLock) {
+            if (_surface != null) {
+                _surface.release();
+                _surface = null;
+                _surfaceTexture = null;
+            }
         }
     }
 
@@ -132,6 +192,9 @@ public class AspectTextureView extends TextureView
         // raise event
         _available$.onNext(false);
 
+        // release surface
+        releaseSurface();
+
         // stop rendering (auto-releases underlying Texture)
         return true;
     }
@@ -0,0 +1,52 @@
+package com.nascentdigital.widget;
+
+import android.graphics.Bitmap;
+import android.graphics.Matrix;
+import android.util.Size;
+import android.view.Surface;
+import android.view.View;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+
+
+public interface PreviewBackend {
+
+    enum Type {
+        TEXTURE,
+        SURFACE
+    }
+
+    View getView();
+
+    int getWidth();
+
+    int getHeight();
+
+    Size getSize();
+
+    boolean isAvailable();
+
+    Observable<Boolean> observeAvailable();
+
+    Observable<Size> observeSize();
+
+    void setAspectRatio(int width, int height);
+
+    // NOTE: output sizes are queried from StreamConfigurationMap with this class
+    Class<?> getSurfaceClass();
+
+    // NOTE: completes once the preview surface uses buffers of this size
+    // (view work is done on the main thread)
+    Completable applyBufferSize(int width, int height);
+
+    // NOTE: the backend owns the surface (callers must not release it)
+    Surface getPreviewSurface();
+
+    boolean supportsTransform();
+
+    void setTransform(Matrix transform);
+
+    // NOTE: returns null if the backend can't read back frames
+    Bitmap getBitmap();
+}
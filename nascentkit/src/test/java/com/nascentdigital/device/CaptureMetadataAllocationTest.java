@@ -0,0 +1,42 @@
+package com.nascentdigital.device;
+
+import android.graphics.Rect;
+
+import com.nascentdigital.testing.AllocationCounter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+
+public class CaptureMetadataAllocationTest {
+
+    private static final long FRAME_INTERVAL = TimeUnit.SECONDS.toNanos(1) / 60;
+    private static final int FRAMES = 300;
+
+    private CaptureMetadataTable _table;
+    private Rect _cropRegion;
+    private long _timestamp;
+
+
+    @Before
+    public void setup() {
+        AllocationCounter.assumeSupported();
+        _table = new CaptureMetadataTable();
+        _cropRegion = new Rect(0, 0, 4032, 3024);
+    }
+
+    @Test
+    public void put_allocatesNothingPerFrame() {
+
+        // record frames the way the preview capture callback does
+        AllocationCounter.assertAllocatesNothing("300 preview frames", () -> {
+            for (int i = 0; i < FRAMES; ++i) {
+                _timestamp += FRAME_INTERVAL;
+                _table.put(_timestamp, _timestamp / FRAME_INTERVAL, 10_000_000L,
+                    100, 2.5f, 2, 2, _cropRegion);
+            }
+        });
+    }
+}
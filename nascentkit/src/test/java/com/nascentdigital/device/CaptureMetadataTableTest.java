@@ -0,0 +1,89 @@
+package com.nascentdigital.device;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+
+public class CaptureMetadataTableTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+
+    @Test
+    public void capacity_coversMaxAgeAtMaxFrameRate() {
+        assertEquals(32, CaptureMetadataTable.getCapacity(SECOND, 30));
+        assertEquals(64, CaptureMetadataTable.getCapacity(SECOND, 60));
+        assertEquals(128, CaptureMetadataTable.getCapacity(SECOND, 120));
+        assertEquals(1, CaptureMetadataTable.getCapacity(SECOND / 100, 30));
+    }
+
+    @Test
+    public void get_findsEveryFrameFromTheLastSecond() {
+
+        // record a second of frames at 60 fps
+        CaptureMetadataTable table = new CaptureMetadataTable(SECOND, 60);
+        final long interval = SECOND / 60;
+        for (int i = 0; i <= 60; ++i) {
+            put(table, 1000 + i * interval, i);
+        }
+
+        // oldest frame is still within max age
+        CaptureMetadata oldest = table.get(1000);
+        assertNotNull(oldest);
+        assertEquals(0, oldest.getFrameNumber());
+        assertEquals(60, table.get(1000 + 60 * interval).getFrameNumber());
+    }
+
+    @Test
+    public void get_copiesSlotValues() {
+
+        // record frame, then read it back
+        CaptureMetadataTable table = new CaptureMetadataTable(SECOND, 30);
+        table.put(5000, 7, 33000, 400, 2.5f, 4, 2, null);
+        CaptureMetadata metadata = table.get(5000);
+
+        // copy survives the slot being overwritten
+        for (int i = 1; i <= 32; ++i) {
+            put(table, 5000 + i, 7 + i);
+        }
+        assertEquals(5000, metadata.getTimestamp());
+        assertEquals(7, metadata.getFrameNumber());
+        assertEquals(33000, metadata.getExposureTime());
+        assertEquals(400, metadata.getSensitivity());
+        assertEquals(2.5f, metadata.getFocusDistance(), 0);
+        assertEquals(4, metadata.getAfState());
+        assertEquals(2, metadata.getAeState());
+        assertNull(table.get(5000));
+    }
+
+    @Test
+    public void get_dropsAgedAndClearedFrames() {
+
+        // record frames more than max age apart
+        CaptureMetadataTable table = new CaptureMetadataTable(SECOND, 30);
+        put(table, 1000, 1);
+        put(table, 1000 + 2 * SECOND, 2);
+        assertNull(table.get(1000));
+        assertNotNull(table.get(1000 + 2 * SECOND));
+
+        // clear drops everything
+        table.clear();
+        assertNull(table.get(1000 + 2 * SECOND));
+    }
+
+    @Test
+    public void setMaxFrameRate_resizesSlots() {
+        CaptureMetadataTable table = new CaptureMetadataTable(SECOND, 30);
+        assertEquals(32, table.getCapacity());
+        table.setMaxFrameRate(120);
+        assertEquals(128, table.getCapacity());
+    }
+
+    private static void put(CaptureMetadataTable table, long timestamp,
+                            long frameNumber) {
+        table.put(timestamp, frameNumber, -1, -1, Float.NaN, -1, -1, null);
+    }
+}
@@ -0,0 +1,50 @@
+package com.nascentdigital.device.backend;
+
+import com.nascentdigital.device.DeviceAccessException;
+
+import java.util.List;
+
+import io.reactivex.Scheduler;
+
+
+// NOTE: all calls must be made on scheduler(), which is also where callbacks
+// are delivered
+public interface CameraBackend {
+
+    interface Callback {
+
+        void onOpened(String cameraId);
+
+        void onDisconnected(String cameraId);
+
+        void onError(String cameraId, int error);
+
+        void onConfigured();
+
+        void onConfigureFailed();
+
+        // NOTE: results may be reused by the backend once this returns
+        void onCaptureResult(FrameResult result);
+
+        void onCaptureFailed(CaptureSpec spec);
+
+        void onImage(FrameImage image);
+    }
+
+
+    Scheduler scheduler();
+
+    List<CameraInfo> getCameras() throws DeviceAccessException;
+
+    void open(String cameraId, Callback callback) throws DeviceAccessException;
+
+    void configure(SessionConfig config) throws DeviceAccessException;
+
+    void setRepeating(CaptureSpec spec) throws DeviceAccessException;
+
+    void stopRepeating() throws DeviceAccessException;
+
+    void capture(CaptureSpec spec) throws DeviceAccessException;
+
+    void close();
+}
@@ -0,0 +1,64 @@
+package com.nascentdigital.device.backend;
+
+import com.nascentdigital.device.CameraPosition;
+import com.nascentdigital.device.geometry.OutputSizeIndex;
+
+
+public final class CameraInfo {
+
+    private final String _id;
+    private final CameraPosition _position;
+    private final int _sensorOrientation;
+    private final boolean _canFlash;
+    private final int[] _photoWidths;
+    private final int[] _photoHeights;
+    private final OutputSizeIndex _photoSizes;
+
+
+    CameraInfo(String id, CameraPosition position, int sensorOrientation,
+               boolean canFlash, int[] photoWidths, int[] photoHeights) {
+
+        // initialize instance variables
+        _id = id;
+        _position = position;
+        _sensorOrientation = sensorOrientation;
+        _canFlash = canFlash;
+        _photoWidths = photoWidths;
+        _photoHeights = photoHeights;
+        _photoSizes = new OutputSizeIndex(photoWidths, photoHeights);
+    }
+
+    public String getId() {
+        return _id;
+    }
+
+    public CameraPosition getPosition() {
+        return _position;
+    }
+
+    public int getSensorOrientation() {
+        return _sensorOrientation;
+    }
+
+    public boolean canFlash() {
+        return _canFlash;
+    }
+
+    public OutputSizeIndex getPhotoSizes() {
+        return _photoSizes;
+    }
+
+    public int getPhotoWidth(int index) {
+        return _photoWidths[index];
+    }
+
+    public int getPhotoHeight(int index) {
+        return _photoHeights[index];
+    }
+
+    @Override
+    public String toString() {
+        return "CameraInfo(" + _id + ", " + _position + ", "
+            + _sensorOrientation + " deg, " + _photoSizes.size() + " photo sizes)";
+    }
+}
@@ -0,0 +1,368 @@
+package com.nascentdigital.device.backend;
+
+import com.nascentdigital.device.CaptureMode;
+import com.nascentdigital.device.DeviceAccessException;
+
+import io.reactivex.Completable;
+import io.reactivex.Observable;
+import io.reactivex.Scheduler;
+import io.reactivex.Single;
+import io.reactivex.SingleEmitter;
+import io.reactivex.disposables.Disposables;
+import io.reactivex.subjects.BehaviorSubject;
+import io.reactivex.subjects.PublishSubject;
+
+
+// NOTE: test fixture modelling CameraFeed's preview / still capture flow over a
+// CameraBackend (CameraFeed drives camera2 directly and only shares
+// StillCaptureSequence); everything (streams included) runs on the backend
+// scheduler
+public class CapturePipeline {
+
+    public enum State {
+        STOPPED,
+        OPENING,
+        CONFIGURING,
+        STREAMING,
+        ERROR
+    }
+
+    private final CameraBackend _backend;
+    private final Scheduler _scheduler;
+    private final BackendObserver _backendObserver;
+    private final BehaviorSubject<State> _state$;
+    private final PublishSubject<FrameResult> _frame$;
+    private final CaptureSpec _previewSpec;
+    private final CaptureSpec _focusSpec;
+    private final CaptureSpec _precaptureSpec;
+    private final CaptureSpec _unlockSpec;
+    private CaptureMode _captureMode;
+    private Throwable _error;
+    private SessionConfig _sessionConfig;
+    private StillCaptureSequence.State _captureState;
+    private SingleEmitter<FrameImage> _photoEmitter;
+    private CaptureSpec _stillSpec;
+    private boolean _unlocking;
+    private long _frameCount;
+
+
+    public CapturePipeline(CameraBackend backend) {
+
+        // initialize instance variables
+        _backend = backend;
+        _scheduler = backend.scheduler();
+        _backendObserver = new BackendObserver();
+        _state$ = BehaviorSubject.createDefault(State.STOPPED);
+        _frame$ = PublishSubject.create();
+        _captureState = StillCaptureSequence.State.IDLE;
+        _captureMode = CaptureMode.PAUSE_PREVIEW;
+
+        // requests are reused for every photo
+        _previewSpec = new CaptureSpec(CaptureSpec.TEMPLATE_PREVIEW,
+            CaptureSpec.TRIGGER_IDLE, CaptureSpec.TRIGGER_IDLE, 0);
+        _focusSpec = new CaptureSpec(CaptureSpec.TEMPLATE_PREVIEW,
+            CaptureSpec.TRIGGER_START, CaptureSpec.TRIGGER_IDLE, 0);
+        _precaptureSpec = new CaptureSpec(CaptureSpec.TEMPLATE_PREVIEW,
+            CaptureSpec.TRIGGER_IDLE, CaptureSpec.TRIGGER_START, 0);
+        _unlockSpec = new CaptureSpec(CaptureSpec.TEMPLATE_PREVIEW,
+            CaptureSpec.TRIGGER_CANCEL, CaptureSpec.TRIGGER_IDLE, 0);
+    }
+
+    public Scheduler scheduler() {
+        return _scheduler;
+    }
+
+    public State getState() {
+        return _state$.getValue();
+    }
+
+    public Throwable getError() {
+        return _error;
+    }
+
+    public Observable<State> observeState() {
+        return _state$;
+    }
+
+    // NOTE: results are reused by the backend; copy what's needed downstream
+    public Observable<FrameResult> observeFrames() {
+        return _frame$;
+    }
+
+    public CaptureMode getCaptureMode() {
+        return _captureMode;
+    }
+
+    // NOTE: applied to the next photo (call on the pipeline scheduler)
+    public void setCaptureMode(CaptureMode captureMode) {
+        _captureMode = captureMode;
+    }
+
+    public long getFrameCount() {
+        return _frameCount;
+    }
+
+    public Completable start(String cameraId, SessionConfig sessionConfig) {
+        return Completable
+            .fromAction(() -> {
+
+                // fail if pipeline is already running
+                State state = getState();
+                if (state != State.STOPPED && state != State.ERROR) {
+                    throw new IllegalStateException(
+                        "CapturePipeline is already started.");
+                }
+
+                // open camera (session is configured once it's open)
+                _error = null;
+                _sessionConfig = sessionConfig;
+                setState(State.OPENING);
+                _backend.open(cameraId, _backendObserver);
+            })
+            .andThen(_state$
+                .filter(state -> state == State.STREAMING || state == State.ERROR)
+                .firstOrError()
+                .flatMapCompletable(state -> state == State.ERROR
+                    ? Completable.error(_error)
+                    : Completable.complete()))
+            .subscribeOn(_scheduler);
+    }
+
+    public Completable stop() {
+        return Completable
+            .fromAction(() -> {
+
+                // release camera
+                _backend.close();
+                _captureState = StillCaptureSequence.State.IDLE;
+                _unlocking = false;
+
+                // fail photo in flight
+                failPhoto(new DeviceAccessException("Camera was stopped."));
+
+                // mark stopped
+                setState(State.STOPPED);
+            })
+            .subscribeOn(_scheduler);
+    }
+
+    // NOTE: the image must be closed by the consumer
+    public Single<FrameImage> capture(int jpegOrientation) {
+        return Single
+            .<FrameImage>create(emitter -> {
+
+                // fail if photo can't be taken
+                if (_photoEmitter != null) {
+                    emitter.onError(new IllegalStateException(
+                        "Attempt to take concurrent photos."));
+                    return;
+                }
+                if (getState() != State.STREAMING) {
+                    emitter.onError(new IllegalStateException(
+                        "CapturePipeline must be streaming to take photos."));
+                    return;
+                }
+
+                // track request (cleared when the request is disposed)
+                _photoEmitter = emitter;
+                emitter.setDisposable(Disposables.fromAction(() -> {
+                    if (_photoEmitter == emitter) {
+                        _photoEmitter = null;
+                    }
+                }));
+                _stillSpec = new CaptureSpec(CaptureSpec.TEMPLATE_STILL_CAPTURE,
+                    CaptureSpec.TRIGGER_IDLE, CaptureSpec.TRIGGER_IDLE,
+                    jpegOrientation);
+
+                // restore preview loop if focus unlock is still pending
+                if (_unlocking) {
+                    _unlocking = false;
+                    _backend.setRepeating(_previewSpec);
+                }
+
+                // try to lock camera focus
+                _captureState = StillCaptureSequence.State.FOCUSING;
+                _backend.capture(_focusSpec);
+            })
+            .subscribeOn(_scheduler);
+    }
+
+    private void setState(State state) {
+        if (_state$.getValue() != state) {
+            _state$.onNext(state);
+        }
+    }
+
+    private void fail(Throwable error) {
+
+        // release camera
+        _backend.close();
+        _captureState = StillCaptureSequence.State.IDLE;
+        _unlocking = false;
+        failPhoto(error);
+
+        // raise error
+        _error = error;
+        setState(State.ERROR);
+    }
+
+    private void failPhoto(Throwable error) {
+        SingleEmitter<FrameImage> emitter = _photoEmitter;
+        if (emitter != null) {
+            _photoEmitter = null;
+            emitter.onError(error);
+        }
+    }
+
+    private void advanceCapture(FrameResult result)
+        throws DeviceAccessException {
+
+        // skip if state is unchanged
+        StillCaptureSequence.State next = StillCaptureSequence.next(
+            _captureState, result.getAfState(), result.getAeState());
+        if (next == _captureState) {
+            return;
+        }
+        _captureState = next;
+
+        // start auto-exposure
+        if (next == StillCaptureSequence.State.CAPTURE_INIT) {
+            _backend.capture(_precaptureSpec);
+        }
+
+        // or take the still (alongside the preview loop when it's kept)
+        else if (next == StillCaptureSequence.State.CAPTURED) {
+            if (_captureMode == CaptureMode.PAUSE_PREVIEW) {
+                _backend.stopRepeating();
+            }
+            _backend.capture(_stillSpec);
+        }
+    }
+
+    private void resumePreview() throws DeviceAccessException {
+
+        // fold focus unlock into the running preview loop (the plain preview
+        // request is restored after its first result)
+        _captureState = StillCaptureSequence.State.IDLE;
+        if (_captureMode == CaptureMode.KEEP_PREVIEW) {
+            _unlocking = true;
+            _backend.setRepeating(_unlockSpec);
+        }
+
+        // or unlock focus, then restart preview loop
+        else {
+            _backend.capture(_unlockSpec);
+            _backend.setRepeating(_previewSpec);
+        }
+    }
+
+
+    private class BackendObserver implements CameraBackend.Callback {
+
+        @Override
+        public void onOpened(String cameraId) {
+
+            // configure outputs
+            setState(State.CONFIGURING);
+            try {
+                _backend.configure(_sessionConfig);
+            }
+            catch (DeviceAccessException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onDisconnected(String cameraId) {
+            fail(new DeviceAccessException("Camera was disconnected: " + cameraId));
+        }
+
+        @Override
+        public void onError(String cameraId, int error) {
+            fail(new DeviceAccessException("Unexpected error from camera: " + error));
+        }
+
+        @Override
+        public void onConfigured() {
+
+            // start preview loop
+            try {
+                _backend.setRepeating(_previewSpec);
+                setState(State.STREAMING);
+            }
+            catch (DeviceAccessException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onConfigureFailed() {
+            fail(new DeviceAccessException("Failed to configure camera session."));
+        }
+
+        @Override
+        public void onCaptureResult(FrameResult result) {
+
+            // publish completed frames
+            if (!result.isPartial()) {
+                ++_frameCount;
+                _frame$.onNext(result);
+            }
+
+            try {
+
+                // restore plain preview loop once focus unlock has been applied
+                if (_unlocking && result.getSpec() == _unlockSpec
+                    && !result.isPartial()) {
+                    _unlocking = false;
+                    _backend.setRepeating(_previewSpec);
+                }
+
+                // keep precapture moving (3A reports on every result)
+                if (StillCaptureSequence.isWaiting(_captureState)) {
+                    advanceCapture(result);
+                }
+
+                // restore preview once the still is captured
+                else if (result.getSpec() == _stillSpec && !result.isPartial()) {
+                    _stillSpec = null;
+                    resumePreview();
+                }
+            }
+            catch (DeviceAccessException e) {
+                fail(e);
+            }
+        }
+
+        @Override
+        public void onCaptureFailed(CaptureSpec spec) {
+
+            // fail photo if the still was lost
+            if (spec == _stillSpec) {
+                _stillSpec = null;
+                failPhoto(new DeviceAccessException("Still capture failed."));
+                try {
+                    resumePreview();
+                }
+                catch (DeviceAccessException e) {
+                    fail(e);
+                }
+            }
+        }
+
+        @Override
+        public void onImage(FrameImage image) {
+
+            // discard image if the request is gone
+            SingleEmitter<FrameImage> emitter = _photoEmitter;
+            if (emitter == null) {
+                image.close();
+                return;
+            }
+
+            // deliver image
+            _photoEmitter = null;
+            emitter.onSuccess(image);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.nascentdigital.device.backend;
+
+import com.nascentdigital.device.CaptureMode;
+import com.nascentdigital.device.DeviceAccessException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.observers.TestObserver;
+import io.reactivex.schedulers.TestScheduler;
+
+import static org.junit.Assert.*;
+
+
+public class CapturePipelineTest {
+
+    private TestScheduler _scheduler;
+    private SyntheticCameraBackend _backend;
+    private CapturePipeline _pipeline;
+
+
+    @Before
+    public void setup() {
+        _scheduler = new TestScheduler();
+        _backend = new SyntheticCameraBackend(_scheduler)
+            .setFrameRate(30)
+            .setPhotoSize(640, 480)
+            .setLatencies(20, 10, 50)
+            .set3AFrames(2, 3, 2);
+        _pipeline = new CapturePipeline(_backend);
+    }
+
+    @Test
+    public void start_streamsFramesAtFrameRate() {
+        TestObserver<Void> start = _pipeline.start(SyntheticCameraBackend.CAMERA_ID,
+            new SessionConfig(null, 640, 480, 2)).test();
+        _scheduler.advanceTimeBy(30, TimeUnit.MILLISECONDS);
+        start.assertComplete();
+        assertEquals(CapturePipeline.State.STREAMING, _pipeline.getState());
+
+        // one second of frames
+        _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertEquals(30, _pipeline.getFrameCount());
+    }
+
+    @Test
+    public void capture_sizesPayloadForEachSession() {
+        _pipeline.start(SyntheticCameraBackend.CAMERA_ID,
+            new SessionConfig(null, 640, 480, 2)).test();
+        _scheduler.advanceTimeBy(30, TimeUnit.MILLISECONDS);
+        TestObserver<FrameImage> small = _pipeline.capture(90).test();
+        _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        // restart with a larger photo size
+        _pipeline.stop().test();
+        _scheduler.triggerActions();
+        _pipeline.start(SyntheticCameraBackend.CAMERA_ID,
+            new SessionConfig(null, 1280, 960, 2)).test();
+        _scheduler.advanceTimeBy(30, TimeUnit.MILLISECONDS);
+        TestObserver<FrameImage> large = _pipeline.capture(90).test();
+        _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        // payload follows the session photo size
+        assertEquals(640 * 480 / 10,
+            small.values().get(0).getBuffer().remaining());
+        assertEquals(1280 * 960 / 10,
+            large.values().get(0).getBuffer().remaining());
+    }
+
+    @Test
+    public void start_failsForUnknownCamera() {
+        TestObserver<Void> start = _pipeline.start("missing",
+            new SessionConfig(null, 640, 480, 2)).test();
+        _scheduler.triggerActions();
+        start.assertError(DeviceAccessException.class);
+    }
+
+    @Test
+    public void capture_runs3ASequenceAndResumesPreview() {
+        _pipeline.start(SyntheticCameraBackend.CAMERA_ID,
+            new SessionConfig(null, 640, 480, 2)).test();
+        _scheduler.advanceTimeBy(30, TimeUnit.MILLISECONDS);
+
+        // AE is still searching, so the capture needs a precapture pass
+        TestObserver<FrameImage> photo = _pipeline.capture(90).test();
+        _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        photo.assertValueCount(1);
+        FrameImage image = photo.values().get(0);
+        assertEquals(FrameImage.FORMAT_JPEG, image.getFormat());
+        assertEquals(640, image.getWidth());
+        assertEquals(480, image.getHeight());
+        assertEquals(0, image.getTimestamp() % _backend.getFrameInterval());
+
+        // preview keeps streaming afterwards
+        long frames = _pipeline.getFrameCount();
+        _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertEquals(frames + 30, _pipeline.getFrameCount());
+    }
+
+    @Test
+    public void capture_foldsFocusUnlockIntoPreviewLoop() {
+        _pipeline.setCaptureMode(CaptureMode.KEEP_PREVIEW);
+        _pipeline.start(SyntheticCameraBackend.CAMERA_ID,
+            new SessionConfig(null, 640, 480, 2)).test();
+        _scheduler.advanceTimeBy(30, TimeUnit.MILLISECONDS);
+
+        // record the request behind every frame
+        List<CaptureSpec> specs = new ArrayList<>();
+        _pipeline.observeFrames().subscribe(frame -> specs.add(frame.getSpec()));
+        _pipeline.capture(90).test();
+        _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+
+        // every frame slot produced a frame (the preview never stopped)
+        assertEquals(30, specs.size());
+
+        // focus is unlocked by one repeating frame, then the preview resumes
+        int still = -1;
+        for (int i = 0; i < specs.size(); ++i) {
+            if (specs.get(i).isStill()) {
+                still = i;
+            }
+        }
+        assertTrue(still >= 0);
+        assertEquals(CaptureSpec.TRIGGER_CANCEL, specs.get(still + 1).getAfTrigger());
+        for (int i = still + 2; i < specs.size(); ++i) {
+            assertEquals(CaptureSpec.TRIGGER_IDLE, specs.get(i).getAfTrigger());
+            assertEquals(CaptureSpec.TEMPLATE_PREVIEW, specs.get(i).getTemplate());
+        }
+    }
+
+    @Test
+    public void capture_pausesPreviewByDefault() {
+        _pipeline.start(SyntheticCameraBackend.CAMERA_ID,
+            new SessionConfig(null, 640, 480, 2)).test();
+        _scheduler.advanceTimeBy(30, TimeUnit.MILLISECONDS);
+
+        // still is taken with the preview stopped, then preview resumes
+        TestObserver<FrameImage> photo = _pipeline.capture(90).test();
+        _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        photo.assertValueCount(1);
+        long frames = _pipeline.getFrameCount();
+        _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        assertEquals(frames + 30, _pipeline.getFrameCount());
+    }
+
+    @Test
+    public void capture_failsWhenCameraDisconnects() {
+        _pipeline.start(SyntheticCameraBackend.CAMERA_ID,
+            new SessionConfig(null, 640, 480, 2)).test();
+        _scheduler.advanceTimeBy(30, TimeUnit.MILLISECONDS);
+        TestObserver<FrameImage> photo = _pipeline.capture(0).test();
+        _scheduler.triggerActions();
+        _backend.disconnect();
+        photo.assertError(DeviceAccessException.class);
+        assertEquals(CapturePipeline.State.ERROR, _pipeline.getState());
+    }
+
+    @Test
+    public void next_capturesWithout3A() {
+        assertEquals(StillCaptureSequence.State.CAPTURED,
+            StillCaptureSequence.next(StillCaptureSequence.State.FOCUSING,
+                StillCaptureSequence.STATE_UNKNOWN, StillCaptureSequence.STATE_UNKNOWN));
+        assertEquals(StillCaptureSequence.State.CAPTURE_INIT,
+            StillCaptureSequence.next(StillCaptureSequence.State.FOCUSING,
+                StillCaptureSequence.AF_STATE_FOCUSED_LOCKED,
+                StillCaptureSequence.AE_STATE_SEARCHING));
+        assertEquals(StillCaptureSequence.State.FOCUSING,
+            StillCaptureSequence.next(StillCaptureSequence.State.FOCUSING,
+                StillCaptureSequence.AF_STATE_ACTIVE_SCAN, StillCaptureSequence.AE_STATE_CONVERGED));
+    }
+}
@@ -0,0 +1,57 @@
+package com.nascentdigital.device.backend;
+
+
+public final class CaptureSpec {
+
+    // templates (matches CameraDevice.TEMPLATE_*)
+    public static final int TEMPLATE_PREVIEW = 1;
+    public static final int TEMPLATE_STILL_CAPTURE = 2;
+
+    // triggers (matches CameraMetadata.CONTROL_*_TRIGGER_*)
+    public static final int TRIGGER_IDLE = 0;
+    public static final int TRIGGER_START = 1;
+    public static final int TRIGGER_CANCEL = 2;
+
+    private final int _template;
+    private final int _afTrigger;
+    private final int _aePrecaptureTrigger;
+    private final int _jpegOrientation;
+
+
+    CaptureSpec(int template, int afTrigger, int aePrecaptureTrigger,
+                int jpegOrientation) {
+
+        // initialize instance variables
+        _template = template;
+        _afTrigger = afTrigger;
+        _aePrecaptureTrigger = aePrecaptureTrigger;
+        _jpegOrientation = jpegOrientation;
+    }
+
+    public int getTemplate() {
+        return _template;
+    }
+
+    public boolean isStill() {
+        return _template == TEMPLATE_STILL_CAPTURE;
+    }
+
+    public int getAfTrigger() {
+        return _afTrigger;
+    }
+
+    public int getAePrecaptureTrigger() {
+        return _aePrecaptureTrigger;
+    }
+
+    public int getJpegOrientation() {
+        return _jpegOrientation;
+    }
+
+    @Override
+    public String toString() {
+        return "CaptureSpec(template " + _template + ", af trigger " + _afTrigger
+            + ", precapture trigger " + _aePrecaptureTrigger
+            + ", orientation " + _jpegOrientation + ")";
+    }
+}
@@ -0,0 +1,24 @@
+package com.nascentdigital.device.backend;
+
+import java.nio.ByteBuffer;
+
+
+public interface FrameImage extends AutoCloseable {
+
+    // formats (matches ImageFormat.*)
+    int FORMAT_JPEG = 0x100;
+
+    int getFormat();
+
+    int getWidth();
+
+    int getHeight();
+
+    long getTimestamp();
+
+    // NOTE: only valid until the image is closed
+    ByteBuffer getBuffer();
+
+    @Override
+    void close();
+}
@@ -0,0 +1,59 @@
+package com.nascentdigital.device.backend;
+
+
+// NOTE: instances are reused by backends; copy values needed after the callback
+public final class FrameResult {
+
+    private CaptureSpec _spec;
+    private long _frameNumber;
+    private long _timestamp;
+    private int _afState;
+    private int _aeState;
+    private boolean _partial;
+
+
+    FrameResult() {
+    }
+
+    void set(CaptureSpec spec, long frameNumber, long timestamp,
+             int afState, int aeState, boolean partial) {
+        _spec = spec;
+        _frameNumber = frameNumber;
+        _timestamp = timestamp;
+        _afState = afState;
+        _aeState = aeState;
+        _partial = partial;
+    }
+
+    public CaptureSpec getSpec() {
+        return _spec;
+    }
+
+    public long getFrameNumber() {
+        return _frameNumber;
+    }
+
+    // NOTE: -1 for partial results without a timestamp
+    public long getTimestamp() {
+        return _timestamp;
+    }
+
+    public int getAfState() {
+        return _afState;
+    }
+
+    public int getAeState() {
+        return _aeState;
+    }
+
+    public boolean isPartial() {
+        return _partial;
+    }
+
+    @Override
+    public String toString() {
+        return "FrameResult(frame " + _frameNumber + ", " + _timestamp
+            + " ns, af " + _afState + ", ae " + _aeState
+            + (_partial ? ", partial" : "") + ")";
+    }
+}
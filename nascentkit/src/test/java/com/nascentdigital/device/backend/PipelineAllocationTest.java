@@ -0,0 +1,70 @@
+package com.nascentdigital.device.backend;
+
+import com.nascentdigital.testing.AllocationCounter;
+import com.nascentdigital.testing.ManualScheduler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.disposables.Disposable;
+
+import static org.junit.Assert.*;
+
+
+// NOTE: covers the CapturePipeline model; the per-frame path CameraFeed ships
+// is covered by CaptureMetadataAllocationTest
+public class PipelineAllocationTest {
+
+    // covers Rx plumbing, the still request and the delivered image
+    private static final long PHOTO_BUDGET_BYTES = 1024;
+
+    private ManualScheduler _scheduler;
+    private CapturePipeline _pipeline;
+    private Disposable _consumer;
+    private long _consumedFrames;
+
+
+    @Before
+    public void setup() {
+
+        // stream frames to a consumer
+        AllocationCounter.assumeSupported();
+        _scheduler = new ManualScheduler();
+        _pipeline = new CapturePipeline(new SyntheticCameraBackend(_scheduler)
+            .setPhotoSize(640, 480)
+            .setLatencies(0, 0, 20));
+        _pipeline.start(SyntheticCameraBackend.CAMERA_ID,
+            new SessionConfig(null, 640, 480, 2)).subscribe();
+        _scheduler.triggerActions();
+        _consumer = _pipeline.observeFrames()
+            .subscribe(frame -> _consumedFrames += frame.getFrameNumber() > 0 ? 1 : 0);
+        assertEquals(CapturePipeline.State.STREAMING, _pipeline.getState());
+    }
+
+    @After
+    public void tearDown() {
+        if (_consumer != null) {
+            _consumer.dispose();
+        }
+    }
+
+    @Test
+    public void frames_allocateNothingInSteadyState() {
+        AllocationCounter.assertAllocatesNothing("300 model frames",
+            () -> _scheduler.advanceTimeBy(10, TimeUnit.SECONDS));
+        assertTrue(_consumedFrames >= AllocationCounter.RUNS * 300);
+    }
+
+    @Test
+    public void takePhoto_staysWithinBudget() {
+        long allocated = AllocationCounter.measure(() -> {
+            _pipeline.capture(90).subscribe(FrameImage::close);
+            _scheduler.advanceTimeBy(1, TimeUnit.SECONDS);
+        }, AllocationCounter.WARMUPS);
+        assertTrue("takePhoto allocated " + allocated + " bytes",
+            allocated <= PHOTO_BUDGET_BYTES * AllocationCounter.RUNS);
+    }
+}
@@ -0,0 +1,44 @@
+package com.nascentdigital.device.backend;
+
+
+public final class SessionConfig {
+
+    private final Object _previewTarget;
+    private final int _photoWidth;
+    private final int _photoHeight;
+    private final int _photoMaxImages;
+
+
+    // NOTE: preview target is backend specific (a Surface for camera2)
+    public SessionConfig(Object previewTarget, int photoWidth, int photoHeight,
+                         int photoMaxImages) {
+
+        // verify photo output
+        if (photoWidth <= 0 || photoHeight <= 0 || photoMaxImages <= 0) {
+            throw new IllegalArgumentException(
+                "Photo output must have a size and at least one image.");
+        }
+
+        // initialize instance variables
+        _previewTarget = previewTarget;
+        _photoWidth = photoWidth;
+        _photoHeight = photoHeight;
+        _photoMaxImages = photoMaxImages;
+    }
+
+    public Object getPreviewTarget() {
+        return _previewTarget;
+    }
+
+    public int getPhotoWidth() {
+        return _photoWidth;
+    }
+
+    public int getPhotoHeight() {
+        return _photoHeight;
+    }
+
+    public int getPhotoMaxImages() {
+        return _photoMaxImages;
+    }
+}
@@ -0,0 +1,377 @@
+package com.nascentdigital.device.backend;
+
+import com.nascentdigital.device.CameraPosition;
+import com.nascentdigital.device.DeviceAccessException;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.Schedulers;
+
+
+// NOTE: deterministic for a given scheduler and settings (timestamps follow the
+// frame clock, not wall time); use a TestScheduler for virtual time
+public class SyntheticCameraBackend implements CameraBackend {
+
+    public static final String CAMERA_ID = "synthetic";
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+
+    private final Scheduler _scheduler;
+    private final FrameResult _result;
+    private final ArrayDeque<CaptureSpec> _pendingCaptures;
+    private int _frameRate;
+    private int _photoWidth;
+    private int _photoHeight;
+    private int _sensorOrientation;
+    private long _openLatency;
+    private long _configureLatency;
+    private long _jpegLatency;
+    private int _focusFrames;
+    private int _exposureFrames;
+    private int _precaptureFrames;
+    private byte[] _jpegData;
+    private byte[] _generatedJpegData;
+    private Callback _callback;
+    private String _cameraId;
+    private int _session;
+    private Disposable _frameLoop;
+    private CaptureSpec _repeatingSpec;
+    private long _frameNumber;
+    private int _afState;
+    private int _aeState;
+    private int _focusCountdown;
+    private int _exposureCountdown;
+
+
+    public SyntheticCameraBackend() {
+        this(Schedulers.from(Executors.newSingleThreadExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "SyntheticCamera");
+                thread.setDaemon(true);
+                return thread;
+            })));
+    }
+
+    public SyntheticCameraBackend(Scheduler scheduler) {
+
+        // initialize instance variables
+        _scheduler = scheduler;
+        _result = new FrameResult();
+        _pendingCaptures = new ArrayDeque<>();
+        _frameRate = 30;
+        _photoWidth = 4032;
+        _photoHeight = 3024;
+        _sensorOrientation = 90;
+        _focusFrames = 3;
+        _exposureFrames = 5;
+        _precaptureFrames = 2;
+    }
+
+    public SyntheticCameraBackend setFrameRate(int frameRate) {
+        if (frameRate <= 0) {
+            throw new IllegalArgumentException("Frame rate must be positive.");
+        }
+        _frameRate = frameRate;
+        return this;
+    }
+
+    public SyntheticCameraBackend setPhotoSize(int width, int height) {
+        _photoWidth = width;
+        _photoHeight = height;
+        return this;
+    }
+
+    public SyntheticCameraBackend setSensorOrientation(int sensorOrientation) {
+        _sensorOrientation = sensorOrientation;
+        return this;
+    }
+
+    public SyntheticCameraBackend setLatencies(long openLatency,
+                                               long configureLatency,
+                                               long jpegLatency) {
+        _openLatency = openLatency;
+        _configureLatency = configureLatency;
+        _jpegLatency = jpegLatency;
+        return this;
+    }
+
+    // NOTE: frame counts for AF lock (after trigger), initial AE convergence and
+    // AE precapture (after trigger); 0 settles on the next frame
+    public SyntheticCameraBackend set3AFrames(int focusFrames, int exposureFrames,
+                                              int precaptureFrames) {
+        _focusFrames = focusFrames;
+        _exposureFrames = exposureFrames;
+        _precaptureFrames = precaptureFrames;
+        return this;
+    }
+
+    // NOTE: by default, photos are JPEG markers around zero-filled data
+    public SyntheticCameraBackend setJpegData(byte[] jpegData) {
+        _jpegData = jpegData;
+        return this;
+    }
+
+    public long getFrameInterval() {
+        return NANOS_PER_SECOND / _frameRate;
+    }
+
+    @Override
+    public Scheduler scheduler() {
+        return _scheduler;
+    }
+
+    @Override
+    public List<CameraInfo> getCameras() {
+        return Collections.singletonList(new CameraInfo(CAMERA_ID,
+            CameraPosition.BACK, _sensorOrientation, false,
+            new int[] { _photoWidth }, new int[] { _photoHeight }));
+    }
+
+    @Override
+    public void open(String cameraId, Callback callback)
+        throws DeviceAccessException {
+
+        // fail if camera is unknown or busy
+        if (!CAMERA_ID.equals(cameraId)) {
+            throw new DeviceAccessException("Unknown synthetic camera: " + cameraId);
+        }
+        if (_callback != null) {
+            throw new DeviceAccessException("Synthetic camera is already open.");
+        }
+
+        // reset device state
+        _callback = callback;
+        _cameraId = cameraId;
+        _frameNumber = 0;
+        _afState = StillCaptureSequence.AF_STATE_PASSIVE_SCAN;
+        _aeState = StillCaptureSequence.AE_STATE_SEARCHING;
+        _focusCountdown = _focusFrames;
+        _exposureCountdown = _exposureFrames;
+
+        // report open after latency
+        final int session = _session;
+        _scheduler.scheduleDirect(() -> {
+            if (session == _session) {
+                callback.onOpened(cameraId);
+            }
+        }, _openLatency, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void configure(SessionConfig config) throws DeviceAccessException {
+
+        // fail if camera isn't open
+        final Callback callback = _callback;
+        if (callback == null) {
+            throw new DeviceAccessException("Synthetic camera is not open.");
+        }
+
+        // prepare photo payload (generated data follows the session photo size)
+        _photoWidth = config.getPhotoWidth();
+        _photoHeight = config.getPhotoHeight();
+        final int jpegLength = Math.max(4, _photoWidth * _photoHeight / 10);
+        if (_jpegData == null && (_generatedJpegData == null
+            || _generatedJpegData.length != jpegLength)) {
+            _generatedJpegData = createJpegData(jpegLength);
+        }
+
+        // start frame clock, then report session after latency
+        final int session = _session;
+        _scheduler.scheduleDirect(() -> {
+            if (session != _session) {
+                return;
+            }
+            if (_frameLoop != null) {
+                _frameLoop.dispose();
+            }
+            final long interval = getFrameInterval();
+            _frameLoop = _scheduler.schedulePeriodicallyDirect(this::onFrame,
+                interval, interval, TimeUnit.NANOSECONDS);
+            callback.onConfigured();
+        }, _configureLatency, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void setRepeating(CaptureSpec spec) throws DeviceAccessException {
+        verifyConfigured();
+        _repeatingSpec = spec;
+    }
+
+    @Override
+    public void stopRepeating() throws DeviceAccessException {
+        verifyConfigured();
+        _repeatingSpec = null;
+    }
+
+    @Override
+    public void capture(CaptureSpec spec) throws DeviceAccessException {
+        verifyConfigured();
+        _pendingCaptures.add(spec);
+    }
+
+    @Override
+    public void close() {
+
+        // invalidate pending callbacks
+        ++_session;
+        if (_frameLoop != null) {
+            _frameLoop.dispose();
+            _frameLoop = null;
+        }
+
+        // reset session state
+        _pendingCaptures.clear();
+        _repeatingSpec = null;
+        _callback = null;
+        _cameraId = null;
+    }
+
+    public void disconnect() {
+
+        // drop device, then notify client
+        final Callback callback = _callback;
+        final String cameraId = _cameraId;
+        close();
+        if (callback != null) {
+            callback.onDisconnected(cameraId);
+        }
+    }
+
+    private void verifyConfigured() throws DeviceAccessException {
+        if (_frameLoop == null) {
+            throw new DeviceAccessException(
+                "Synthetic camera session is not configured.");
+        }
+    }
+
+    private void onFrame() {
+
+        // use next one-shot request, or the repeating one (skip idle frames)
+        CaptureSpec spec = _pendingCaptures.poll();
+        if (spec == null) {
+            spec = _repeatingSpec;
+        }
+        if (spec == null) {
+            return;
+        }
+
+        // advance 3A, then apply request triggers
+        advance3A();
+        if (spec.getAfTrigger() == CaptureSpec.TRIGGER_START) {
+            _afState = StillCaptureSequence.AF_STATE_ACTIVE_SCAN;
+            _focusCountdown = _focusFrames;
+        }
+        else if (spec.getAfTrigger() == CaptureSpec.TRIGGER_CANCEL) {
+            _afState = StillCaptureSequence.AF_STATE_PASSIVE_SCAN;
+            _focusCountdown = _focusFrames;
+        }
+        if (spec.getAePrecaptureTrigger() == CaptureSpec.TRIGGER_START) {
+            _aeState = StillCaptureSequence.AE_STATE_PRECAPTURE;
+            _exposureCountdown = _precaptureFrames;
+        }
+
+        // report frame (timestamps follow the frame clock)
+        final Callback callback = _callback;
+        final long timestamp = ++_frameNumber * getFrameInterval();
+        _result.set(spec, _frameNumber, timestamp, _afState, _aeState, false);
+        callback.onCaptureResult(_result);
+
+        // deliver photo after encoding latency
+        if (spec.isStill()) {
+            final int session = _session;
+            final FrameImage image = new SyntheticImage(_photoWidth,
+                _photoHeight, timestamp,
+                _jpegData != null ? _jpegData : _generatedJpegData);
+            _scheduler.scheduleDirect(() -> {
+                if (session == _session) {
+                    callback.onImage(image);
+                }
+            }, _jpegLatency, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void advance3A() {
+
+        // settle auto-focus
+        if (_afState == StillCaptureSequence.AF_STATE_ACTIVE_SCAN
+            || _afState == StillCaptureSequence.AF_STATE_PASSIVE_SCAN) {
+            if (_focusCountdown-- <= 0) {
+                _afState = _afState == StillCaptureSequence.AF_STATE_ACTIVE_SCAN
+                    ? StillCaptureSequence.AF_STATE_FOCUSED_LOCKED
+                    : StillCaptureSequence.AF_STATE_PASSIVE_FOCUSED;
+            }
+        }
+
+        // settle auto-exposure
+        if (_aeState == StillCaptureSequence.AE_STATE_SEARCHING
+            || _aeState == StillCaptureSequence.AE_STATE_PRECAPTURE) {
+            if (_exposureCountdown-- <= 0) {
+                _aeState = StillCaptureSequence.AE_STATE_CONVERGED;
+            }
+        }
+    }
+
+    private static byte[] createJpegData(int length) {
+
+        // wrap zero-filled data with SOI / EOI markers
+        byte[] data = new byte[Math.max(4, length)];
+        data[0] = (byte) 0xFF;
+        data[1] = (byte) 0xD8;
+        data[data.length - 2] = (byte) 0xFF;
+        data[data.length - 1] = (byte) 0xD9;
+        return data;
+    }
+
+
+    private static final class SyntheticImage implements FrameImage {
+
+        private final int _width;
+        private final int _height;
+        private final long _timestamp;
+        private final byte[] _data;
+
+
+        SyntheticImage(int width, int height, long timestamp, byte[] data) {
+            _width = width;
+            _height = height;
+            _timestamp = timestamp;
+            _data = data;
+        }
+
+        @Override
+        public int getFormat() {
+            return FORMAT_JPEG;
+        }
+
+        @Override
+        public int getWidth() {
+            return _width;
+        }
+
+        @Override
+        public int getHeight() {
+            return _height;
+        }
+
+        @Override
+        public long getTimestamp() {
+            return _timestamp;
+        }
+
+        @Override
+        public ByteBuffer getBuffer() {
+            return ByteBuffer.wrap(_data).asReadOnlyBuffer();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
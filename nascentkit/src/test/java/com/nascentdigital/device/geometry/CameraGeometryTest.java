@@ -0,0 +1,56 @@
+package com.nascentdigital.device.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class CameraGeometryTest {
+
+    @Test
+    public void jpegOrientation_combinesDisplayAndSensor() {
+        assertEquals(90, CameraGeometry.getJpegOrientation(CameraGeometry.ROTATION_0, 90));
+        assertEquals(0, CameraGeometry.getJpegOrientation(CameraGeometry.ROTATION_90, 90));
+        assertEquals(270, CameraGeometry.getJpegOrientation(CameraGeometry.ROTATION_180, 90));
+        assertEquals(180, CameraGeometry.getJpegOrientation(CameraGeometry.ROTATION_270, 90));
+        assertEquals(270, CameraGeometry.getJpegOrientation(CameraGeometry.ROTATION_0, 270));
+    }
+
+    @Test
+    public void axisFlip_matchesSensorOrientation() {
+        assertTrue(CameraGeometry.isAxisFlipped(CameraGeometry.ROTATION_0, 90));
+        assertFalse(CameraGeometry.isAxisFlipped(CameraGeometry.ROTATION_90, 90));
+        assertTrue(CameraGeometry.isAxisFlipped(CameraGeometry.ROTATION_270, 0));
+        assertFalse(CameraGeometry.isAxisFlipped(-1, 90));
+    }
+
+    @Test
+    public void previewConstraints_flipAndClamp() {
+        PreviewConstraints constraints = CameraGeometry.getPreviewConstraints(
+            1080, 1920, 1080, 2160, CameraGeometry.ROTATION_0, 90, 1920, 1080);
+        assertTrue(constraints.flipAxis);
+        assertEquals(1920, constraints.minWidth);
+        assertEquals(1080, constraints.minHeight);
+        assertEquals(1920, constraints.maxWidth);
+        assertEquals(1080, constraints.maxHeight);
+    }
+
+    @Test
+    public void previewTransform_rotatesAndCoversPreview() {
+
+        // landscape (ROTATION_90) maps buffer center to preview center
+        PreviewTransform transform = PreviewTransform.compute(
+            1920, 1080, 1920, 1080, CameraGeometry.ROTATION_90);
+        float[] values = new float[9];
+        transform.getValues(values);
+        assertEquals(-90, transform.getRotation());
+        assertEquals(960, values[0] * 960 + values[1] * 540 + values[2], 0.01f);
+        assertEquals(540, values[3] * 960 + values[4] * 540 + values[5], 0.01f);
+    }
+
+    @Test
+    public void previewTransform_identityInPortrait() {
+        assertTrue(PreviewTransform.compute(1080, 1920, 1920, 1080,
+            CameraGeometry.ROTATION_0).isIdentity());
+    }
+}
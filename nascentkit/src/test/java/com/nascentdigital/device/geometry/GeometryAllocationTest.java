@@ -0,0 +1,63 @@
+package com.nascentdigital.device.geometry;
+
+import com.nascentdigital.testing.AllocationCounter;
+
+import org.junit.Before;
+import org.junit.Test;
+
+
+public class GeometryAllocationTest {
+
+    private static final int[] WIDTHS = { 1920, 640, 1440, 4032, 1280, 960, 3264 };
+    private static final int[] HEIGHTS = { 1080, 480, 1080, 3024, 720, 720, 2448 };
+    private static final int ITERATIONS = 1000;
+
+
+    @Before
+    public void setup() {
+        AllocationCounter.assumeSupported();
+    }
+
+    @Test
+    public void previewTransformCache_hitsAllocateNothing() {
+        PreviewTransformCache cache = new PreviewTransformCache();
+        cache.get(1080, 1920, 1920, 1080, CameraGeometry.ROTATION_0);
+        cache.get(1920, 1080, 1920, 1080, CameraGeometry.ROTATION_90);
+        AllocationCounter.assertAllocatesNothing("previewTransformCache hits", () -> {
+            for (int i = 0; i < ITERATIONS; ++i) {
+                cache.get(1080, 1920, 1920, 1080, CameraGeometry.ROTATION_0);
+                cache.get(1920, 1080, 1920, 1080, CameraGeometry.ROTATION_90);
+            }
+        });
+    }
+
+    @Test
+    public void outputSizeIndex_queriesAllocateNothing() {
+        OutputSizeIndex index = new OutputSizeIndex(WIDTHS, HEIGHTS);
+        AllocationCounter.assertAllocatesNothing("outputSizeIndex queries", () -> {
+            for (int i = 0; i < ITERATIONS; ++i) {
+                index.chooseOptimalSize(1080, 1080, 1920, 1080, 4, 3);
+                index.largestAtMost(4032L * 3024 / 2);
+                index.smallestAtLeast(640, 480, 16, 9);
+            }
+        });
+    }
+
+    @Test
+    public void regionGeometry_allocatesNothing() {
+        float[] region = { 0.25f, 0.25f, 0.75f, 0.75f };
+        float[] sensorRegion = new float[4];
+        int[] crop = new int[4];
+        int[] imageRegion = new int[4];
+        AllocationCounter.assertAllocatesNothing("regionGeometry", () -> {
+            for (int i = 0; i < ITERATIONS; ++i) {
+                RegionGeometry.toSensorRegion(region, 90, sensorRegion);
+                RegionGeometry.getCropRegion(sensorRegion, 4032, 3024, 4032, 3024,
+                    4, crop);
+                RegionGeometry.mapToImage(sensorRegion, crop, 4032, 3024,
+                    4032, 3024, imageRegion);
+                CameraGeometry.getJpegOrientation(CameraGeometry.ROTATION_90, 90);
+            }
+        });
+    }
+}
@@ -0,0 +1,111 @@
+package com.nascentdigital.device.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class OutputSizeIndexTest {
+
+    private static final int[] WIDTHS = { 1920, 640, 1440, 4032, 1280, 960, 3264 };
+    private static final int[] HEIGHTS = { 1080, 480, 1080, 3024, 720, 720, 2448 };
+
+
+    @Test
+    public void index_groupsByReducedAspect() {
+        OutputSizeIndex index = new OutputSizeIndex(WIDTHS, HEIGHTS);
+        assertEquals(7, index.size());
+        assertEquals(2, index.getAspectCount());
+        assertEquals(3, index.largest());
+        assertEquals(1, index.smallest());
+    }
+
+    @Test
+    public void largestAtMost_searchesByArea() {
+        OutputSizeIndex index = new OutputSizeIndex(WIDTHS, HEIGHTS);
+        assertEquals(6, index.largestAtMost(4032L * 3024 - 1));
+        assertEquals(0, index.largestAtMost(1920L * 1080));
+        assertEquals(-1, index.largestAtMost(100));
+    }
+
+    @Test
+    public void smallestAtLeast_matchesAspect() {
+        OutputSizeIndex index = new OutputSizeIndex(WIDTHS, HEIGHTS);
+        assertEquals(2, index.smallestAtLeast(1000, 1000, 4032, 3024));
+        assertEquals(0, index.smallestAtLeast(1300, 700, 16, 9));
+        assertEquals(-1, index.smallestAtLeast(5000, 5000, 4, 3));
+        assertEquals(-1, index.smallestAtLeast(100, 100, 1, 1));
+    }
+
+    @Test
+    public void chooseOptimalSize_prefersSmallestLargeEnough() {
+
+        // 4:3 sizes under 1920x1080 that cover 1000x700
+        OutputSizeIndex index = new OutputSizeIndex(WIDTHS, HEIGHTS);
+        assertEquals(2, index.chooseOptimalSize(1000, 700, 1920, 1080, 4, 3));
+    }
+
+    @Test
+    public void chooseOptimalSize_fallsBackToLargestTooSmall() {
+        OutputSizeIndex index = new OutputSizeIndex(WIDTHS, HEIGHTS);
+        assertEquals(2, index.chooseOptimalSize(1900, 1900, 1920, 1080, 4, 3));
+    }
+
+    @Test
+    public void chooseOptimalSize_returnsNoneWithoutAspectMatch() {
+        OutputSizeIndex index = new OutputSizeIndex(WIDTHS, HEIGHTS);
+        assertEquals(-1, index.chooseOptimalSize(100, 100, 1920, 1080, 21, 9));
+    }
+
+    @Test
+    public void chooseOptimalSize_matchesLinearSearch() {
+        OutputSizeIndex index = new OutputSizeIndex(WIDTHS, HEIGHTS);
+        int[][] queries = {
+            { 1080, 1080, 1920, 1080, 4, 3 },
+            { 2000, 1500, 1920, 1080, 4, 3 },
+            { 640, 360, 1920, 1080, 16, 9 },
+            { 640, 480, 4032, 3024, 4, 3 },
+            { 100, 100, 100, 100, 4, 3 },
+            { 100, 100, 1920, 1080, 1, 1 }
+        };
+        for (int[] query : queries) {
+            assertEquals(
+                chooseLinear(query[0], query[1], query[2], query[3],
+                    query[4], query[5]),
+                index.chooseOptimalSize(
+                    query[0], query[1], query[2], query[3], query[4], query[5]));
+        }
+    }
+
+    private static int chooseLinear(int minWidth, int minHeight,
+                                    int maxWidth, int maxHeight,
+                                    int aspectWidth, int aspectHeight) {
+
+        // smallest "large enough" size, else the largest "not large enough"
+        int bigEnough = -1;
+        int notBigEnough = -1;
+        for (int i = 0; i < WIDTHS.length; ++i) {
+            final int width = WIDTHS[i];
+            final int height = HEIGHTS[i];
+            if (width > maxWidth
+                || height > maxHeight
+                || height != width * aspectHeight / aspectWidth) {
+                continue;
+            }
+            final long area = (long) width * height;
+            if (width >= minWidth && height >= minHeight) {
+                if (bigEnough < 0
+                    || area < (long) WIDTHS[bigEnough] * HEIGHTS[bigEnough]) {
+                    bigEnough = i;
+                }
+            }
+            else if (notBigEnough < 0
+                || area > (long) WIDTHS[notBigEnough] * HEIGHTS[notBigEnough]) {
+                notBigEnough = i;
+            }
+        }
+        return bigEnough >= 0
+            ? bigEnough
+            : notBigEnough;
+    }
+}
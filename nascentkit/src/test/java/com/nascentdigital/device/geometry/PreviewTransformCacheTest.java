@@ -0,0 +1,46 @@
+package com.nascentdigital.device.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class PreviewTransformCacheTest {
+
+    @Test
+    public void get_reusesTransformForSameInputs() {
+        PreviewTransformCache cache = new PreviewTransformCache();
+        PreviewTransform transform = cache.get(1920, 1080, 1920, 1080,
+            CameraGeometry.ROTATION_90);
+        assertSame(transform, cache.get(1920, 1080, 1920, 1080,
+            CameraGeometry.ROTATION_90));
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void get_evictsLeastRecentlyUsed() {
+        PreviewTransformCache cache = new PreviewTransformCache(2);
+        PreviewTransform first = cache.get(100, 200, 300, 400,
+            CameraGeometry.ROTATION_90);
+        PreviewTransform second = cache.get(500, 600, 700, 800,
+            CameraGeometry.ROTATION_90);
+
+        // touch first, then insert a third entry (evicts second)
+        cache.get(100, 200, 300, 400, CameraGeometry.ROTATION_90);
+        cache.get(900, 900, 900, 900, CameraGeometry.ROTATION_90);
+        assertEquals(2, cache.size());
+        assertSame(first, cache.get(100, 200, 300, 400,
+            CameraGeometry.ROTATION_90));
+        assertNotSame(second, cache.get(500, 600, 700, 800,
+            CameraGeometry.ROTATION_90));
+    }
+
+    @Test
+    public void get_distinguishesRotation() {
+        PreviewTransformCache cache = new PreviewTransformCache();
+        assertNotSame(
+            cache.get(1920, 1080, 1920, 1080, CameraGeometry.ROTATION_90),
+            cache.get(1920, 1080, 1920, 1080, CameraGeometry.ROTATION_270));
+    }
+}
@@ -0,0 +1,55 @@
+package com.nascentdigital.device.geometry;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class RegionGeometryTest {
+
+    @Test
+    public void sensorRegion_undoesOrientation() {
+        float[] region = { 0.1f, 0.2f, 0.3f, 0.6f };
+        float[] sensor = new float[4];
+
+        // portrait photo (sensor rotated 90 degrees clockwise)
+        RegionGeometry.toSensorRegion(region, 90, sensor);
+        assertArrayEquals(new float[] { 0.2f, 0.7f, 0.6f, 0.9f }, sensor, 1e-6f);
+
+        RegionGeometry.toSensorRegion(region, 180, sensor);
+        assertArrayEquals(new float[] { 0.7f, 0.4f, 0.9f, 0.8f }, sensor, 1e-6f);
+
+        RegionGeometry.toSensorRegion(region, 270, sensor);
+        assertArrayEquals(new float[] { 0.4f, 0.1f, 0.8f, 0.3f }, sensor, 1e-6f);
+
+        RegionGeometry.toSensorRegion(region, 0, sensor);
+        assertArrayEquals(region, sensor, 1e-6f);
+    }
+
+    @Test
+    public void cropRegion_growsToOutputAspect() {
+        int[] crop = new int[4];
+        RegionGeometry.getCropRegion(new float[] { 0.25f, 0.25f, 0.5f, 0.75f },
+            4000, 3000, 4000, 3000, 8, crop);
+        assertArrayEquals(new int[] { 500, 750, 2500, 2250 }, crop);
+    }
+
+    @Test
+    public void cropRegion_respectsMaxZoomAndBounds() {
+        int[] crop = new int[4];
+
+        // tiny region in the corner (limited to 4x zoom, shifted inside)
+        RegionGeometry.getCropRegion(new float[] { 0, 0, 0.01f, 0.01f },
+            4000, 3000, 4000, 3000, 4, crop);
+        assertArrayEquals(new int[] { 0, 0, 1000, 750 }, crop);
+    }
+
+    @Test
+    public void imageRegion_mapsWithinCrop() {
+        int[] crop = { 500, 750, 2500, 2250 };
+        int[] region = new int[4];
+        RegionGeometry.mapToImage(new float[] { 0.25f, 0.25f, 0.5f, 0.75f },
+            crop, 4000, 3000, 4000, 3000, region);
+        assertArrayEquals(new int[] { 1000, 0, 3000, 3000 }, region);
+    }
+}
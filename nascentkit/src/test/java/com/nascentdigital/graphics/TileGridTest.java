@@ -0,0 +1,76 @@
+package com.nascentdigital.graphics;
+
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+
+public class TileGridTest {
+
+    @Test
+    public void levels_stopOnceThePhotoFitsOneTile() {
+        TileGrid grid = new TileGrid(4032, 3024, 256);
+        assertEquals(5, grid.getLevelCount());
+        assertEquals(1, grid.getColumnCount(4));
+        assertEquals(1, grid.getRowCount(4));
+        assertEquals(1, new TileGrid(200, 100, 256).getLevelCount());
+    }
+
+    @Test
+    public void level_matchesScale() {
+        TileGrid grid = new TileGrid(4032, 3024, 256);
+        assertEquals(0, grid.getLevel(1f));
+        assertEquals(0, grid.getLevel(0.6f));
+        assertEquals(1, grid.getLevel(0.5f));
+        assertEquals(2, grid.getLevel(0.25f));
+        assertEquals(4, grid.getLevel(0.001f));
+    }
+
+    @Test
+    public void bounds_clipEdgeTiles() {
+        TileGrid grid = new TileGrid(1000, 600, 256);
+        assertEquals(4, grid.getColumnCount(0));
+        assertEquals(3, grid.getRowCount(0));
+
+        int[] bounds = new int[4];
+        grid.getTileBounds(0, 3, 2, bounds);
+        assertArrayEquals(new int[] { 768, 512, 1000, 600 }, bounds);
+        grid.getTileBounds(1, 1, 0, bounds);
+        assertArrayEquals(new int[] { 512, 0, 1000, 512 }, bounds);
+    }
+
+    @Test
+    public void validity_coversOnlyGridTiles() {
+        TileGrid grid = new TileGrid(1000, 600, 256);
+        assertTrue(grid.isValidTile(0, 3, 2));
+        assertFalse(grid.isValidTile(0, 4, 0));
+        assertFalse(grid.isValidTile(0, 0, 3));
+        assertFalse(grid.isValidTile(-1, 0, 0));
+        assertFalse(grid.isValidTile(grid.getLevelCount(), 0, 0));
+    }
+
+    @Test
+    public void keys_areUniqueAcrossLevels() {
+
+        // every tile of every level maps to its own key
+        TileGrid grid = new TileGrid(4032, 3024, 256);
+        Set<Long> keys = new HashSet<>();
+        int tileCount = 0;
+        for (int level = 0; level < grid.getLevelCount(); ++level) {
+            for (int column = 0; column < grid.getColumnCount(level); ++column) {
+                for (int row = 0; row < grid.getRowCount(level); ++row) {
+                    keys.add(TileGrid.getTileKey(level, column, row));
+                    ++tileCount;
+                }
+            }
+        }
+        assertEquals(tileCount, keys.size());
+
+        // swapped coordinates don't collide
+        assertNotEquals(TileGrid.getTileKey(0, 1, 2), TileGrid.getTileKey(0, 2, 1));
+        assertNotEquals(TileGrid.getTileKey(1, 0, 0), TileGrid.getTileKey(0, 0, 0));
+    }
+}
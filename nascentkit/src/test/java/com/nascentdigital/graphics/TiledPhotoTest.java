@@ -0,0 +1,36 @@
+package com.nascentdigital.graphics;
+
+import android.content.ComponentCallbacks2;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+
+public class TiledPhotoTest {
+
+    private static final int CACHE_SIZE = 1024;
+
+
+    @Test
+    public void trim_keepsTilesWithoutPressure() {
+        assertEquals(CACHE_SIZE, TiledPhoto.getTrimmedCacheSize(
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE, CACHE_SIZE));
+    }
+
+    @Test
+    public void trim_halvesCacheWhenRunningLow() {
+        assertEquals(CACHE_SIZE / 2, TiledPhoto.getTrimmedCacheSize(
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW, CACHE_SIZE));
+    }
+
+    @Test
+    public void trim_evictsEverythingUnderHeavyPressure() {
+        assertEquals(0, TiledPhoto.getTrimmedCacheSize(
+            ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL, CACHE_SIZE));
+        assertEquals(0, TiledPhoto.getTrimmedCacheSize(
+            ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN, CACHE_SIZE));
+        assertEquals(0, TiledPhoto.getTrimmedCacheSize(
+            ComponentCallbacks2.TRIM_MEMORY_COMPLETE, CACHE_SIZE));
+    }
+}
@@ -0,0 +1,52 @@
+package com.nascentdigital.graphics;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+
+public class YuvHelperTest {
+
+    @Test
+    public void toArgb_keepsNeutralChromaGray() {
+        assertEquals(0xFF000000, YuvHelper.toArgb(0, 128, 128));
+        assertEquals(0xFF808080, YuvHelper.toArgb(128, 128, 128));
+        assertEquals(0xFFFFFFFF, YuvHelper.toArgb(255, 128, 128));
+    }
+
+    @Test
+    public void toArgb_convertsAndClampsChroma() {
+        assertEquals(0xFFFE0000, YuvHelper.toArgb(76, 85, 255));
+        assertEquals(0xFF0000FE, YuvHelper.toArgb(29, 255, 107));
+        assertEquals(0xFFFF0000, YuvHelper.toArgb(255, 0, 255) & 0xFFFF0000);
+    }
+
+    @Test
+    public void convertRow_honorsStridesAndInterleavedChroma() {
+
+        // 4x2 luma with padded rows (stride 6)
+        ByteBuffer y = ByteBuffer.wrap(new byte[] {
+            10, 20, 30, 40, 0, 0,
+            50, 60, 70, (byte) 200, 0, 0 });
+
+        // interleaved VU plane (pixel stride 2, row stride 4), sharing memory like NV21
+        ByteBuffer vu = ByteBuffer.wrap(new byte[] {
+            (byte) 128, (byte) 128, (byte) 255, (byte) 128 });
+        ByteBuffer v = vu.duplicate();
+        ByteBuffer u = ((ByteBuffer) vu.duplicate().position(1)).slice();
+
+        // convert second row (shares chroma with the first)
+        int[] argb = new int[4];
+        YuvHelper.convertRow(y, 6, u, v, 4, 2, 1, 4, argb);
+        assertEquals(YuvHelper.toArgb(50, 128, 128), argb[0]);
+        assertEquals(YuvHelper.toArgb(60, 128, 128), argb[1]);
+        assertEquals(YuvHelper.toArgb(70, 128, 255), argb[2]);
+        assertEquals(YuvHelper.toArgb(200, 128, 255), argb[3]);
+
+        // buffers aren't consumed
+        assertEquals(0, y.position());
+        assertEquals(0, u.position());
+    }
+}
@@ -0,0 +1,98 @@
+package com.nascentdigital.testing;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+
+// NOTE: counts bytes allocated by the calling thread (HotSpot thread allocation
+// accounting); tests are skipped on JVMs without it
+public final class AllocationCounter {
+
+    public static final int WARMUPS = 50;
+    public static final int RUNS = 10;
+
+    // bytes tolerated across all runs (about one JIT recompilation); anything
+    // allocated per frame, or recurring in every run, exceeds it
+    public static final long TOLERANCE_BYTES = 1024;
+
+    private static final com.sun.management.ThreadMXBean THREADS = getThreads();
+    private static long _overhead = -1;
+
+
+    private AllocationCounter() {
+    }
+
+    public static void assumeSupported() {
+        assumeTrue("thread allocation accounting is unavailable",
+            THREADS != null);
+    }
+
+    public static long measure(Runnable operation) {
+
+        // calibrate cost of the measurement itself (once)
+        assumeSupported();
+        if (_overhead < 0) {
+            _overhead = Long.MAX_VALUE;
+            for (int i = 0; i < 10; ++i) {
+                _overhead = Math.min(_overhead, sample(() -> { }));
+            }
+        }
+
+        // total a fixed number of runs (periodic allocations can't hide
+        // between samples)
+        long allocated = 0;
+        for (int i = 0; i < RUNS; ++i) {
+            allocated += sample(operation) - _overhead;
+        }
+        return Math.max(0, allocated);
+    }
+
+    public static long measure(Runnable operation, int warmups) {
+
+        // let lazy initialization and JIT settle before measuring
+        for (int i = 0; i < warmups; ++i) {
+            operation.run();
+        }
+        return measure(operation);
+    }
+
+    public static void assertAllocatesNothing(String message,
+                                              Runnable operation) {
+        final long allocated = measure(operation, WARMUPS);
+        assertTrue(message + ": " + allocated + " bytes over " + RUNS + " runs",
+            allocated <= TOLERANCE_BYTES);
+    }
+
+    private static long sample(Runnable operation) {
+        final long threadId = Thread.currentThread().getId();
+        final long start = THREADS.getThreadAllocatedBytes(threadId);
+        operation.run();
+        return THREADS.getThreadAllocatedBytes(threadId) - start;
+    }
+
+    private static com.sun.management.ThreadMXBean getThreads() {
+
+        // require HotSpot-style allocation accounting
+        try {
+            java.lang.management.ThreadMXBean threads
+                = ManagementFactory.getThreadMXBean();
+            if (!(threads instanceof com.sun.management.ThreadMXBean)) {
+                return null;
+            }
+            com.sun.management.ThreadMXBean hotspotThreads
+                = (com.sun.management.ThreadMXBean) threads;
+            if (!hotspotThreads.isThreadAllocatedMemorySupported()) {
+                return null;
+            }
+            hotspotThreads.setThreadAllocatedMemoryEnabled(true);
+            return hotspotThreads;
+        }
+
+        // or skip if the management API is missing (i.e. on device)
+        catch (LinkageError | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+}
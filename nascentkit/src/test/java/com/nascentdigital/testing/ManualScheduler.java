@@ -0,0 +1,147 @@
+package com.nascentdigital.testing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.reactivex.Scheduler;
+import io.reactivex.disposables.Disposable;
+
+
+// NOTE: virtual-time scheduler (like TestScheduler) whose periodic tasks don't
+// allocate per run, so steady-state allocations can be attributed to the code
+// under test
+public final class ManualScheduler extends Scheduler {
+
+    private final List<Task> _tasks = new ArrayList<>(64);
+    private long _now;
+    private long _sequence;
+
+
+    @Override
+    public long now(TimeUnit unit) {
+        return unit.convert(_now, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public Worker createWorker() {
+        return new ManualWorker();
+    }
+
+    @Override
+    public Disposable scheduleDirect(Runnable run, long delay, TimeUnit unit) {
+        return add(run, unit.toNanos(delay), 0);
+    }
+
+    @Override
+    public Disposable schedulePeriodicallyDirect(Runnable run, long initialDelay,
+                                                 long period, TimeUnit unit) {
+        return add(run, unit.toNanos(initialDelay), Math.max(1, unit.toNanos(period)));
+    }
+
+    public void advanceTimeBy(long time, TimeUnit unit) {
+        advanceTo(_now + unit.toNanos(time));
+    }
+
+    public void triggerActions() {
+        advanceTo(_now);
+    }
+
+    private Task add(Runnable run, long delay, long period) {
+        Task task = new Task(run, _now + Math.max(0, delay), period, _sequence++);
+        _tasks.add(task);
+        return task;
+    }
+
+    private void advanceTo(long target) {
+        while (true) {
+
+            // find earliest due task (ties run in scheduling order)
+            Task next = null;
+            for (int i = 0; i < _tasks.size(); ++i) {
+                Task task = _tasks.get(i);
+                if (task._due <= target && (next == null || task._due < next._due
+                    || (task._due == next._due && task._sequence < next._sequence))) {
+                    next = task;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+
+            // reschedule periodic tasks in place, drop one-shot tasks
+            _now = next._due;
+            if (next._period > 0) {
+                next._due += next._period;
+                next._sequence = _sequence++;
+            }
+            else {
+                _tasks.remove(next);
+            }
+            next._run.run();
+        }
+        _now = target;
+    }
+
+
+    private final class Task implements Disposable {
+
+        private final Runnable _run;
+        private final long _period;
+        private long _due;
+        private long _sequence;
+        private boolean _disposed;
+
+
+        Task(Runnable run, long due, long period, long sequence) {
+            _run = run;
+            _due = due;
+            _period = period;
+            _sequence = sequence;
+        }
+
+        @Override
+        public void dispose() {
+            _disposed = true;
+            _tasks.remove(this);
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return _disposed;
+        }
+    }
+
+    private final class ManualWorker extends Worker {
+
+        private final List<Disposable> _scheduled = new ArrayList<>();
+        private boolean _disposed;
+
+
+        @Override
+        public Disposable schedule(Runnable run, long delay, TimeUnit unit) {
+            Disposable task = scheduleDirect(run, delay, unit);
+            if (_disposed) {
+                task.dispose();
+            }
+            else {
+                _scheduled.add(task);
+            }
+            return task;
+        }
+
+        @Override
+        public void dispose() {
+            _disposed = true;
+            for (Disposable task : _scheduled) {
+                task.dispose();
+            }
+            _scheduled.clear();
+        }
+
+        @Override
+        public boolean isDisposed() {
+            return _disposed;
+        }
+    }
+}